@@ -0,0 +1,175 @@
+package com.rockyrunstream.walmart;
+
+import com.rockyrunstream.walmart.impl.CustomerThrottle;
+import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full hold and reserve cycle through TicketService, the same beans as in production. JMH runs a benchmark with a
+ * single thread count, {@link #main(String[])} runs it at 1 to 64 threads and prints the scalability summary:
+ * gradle jmhThreads
+ *
+ * The venue is emptied every iteration. Once it is sold out, holds fail fast and JMH still counts them as operations,
+ * so reserved and failed operations are reported as separate counters and the summary warns about failures
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketServiceBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static final AtomicInteger NEXT_CUSTOMER = new AtomicInteger();
+
+    @Param({"1", "10"})
+    private int numSeats;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TicketService ticketService;
+
+    private ReservationStore store;
+
+    @State(Scope.Thread)
+    public static class Customer {
+
+        private String email;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            email = "customer" + NEXT_CUSTOMER.incrementAndGet() + "@example.com";
+        }
+    }
+
+    /**
+     * Operation outcomes, reported by JMH as rates next to the primary score
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+
+        public long reserved;
+
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            reserved = 0;
+            failed = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        //1. Service, a customer per thread
+        context = new AnnotationConfigApplicationContext(TicketServiceTestConfiguration.class);
+        context.getBean(CustomerThrottle.class).setEnabled(false);
+        ticketService = context.getBean(TicketService.class);
+        store = context.getBean(ReservationStore.class);
+
+        //2. Venue, 100K seats. Holds do not expire during an iteration
+        final Venue venue = VenueGenerator.generate(500, 200);
+        venue.setMaxHoldTime(TimeUnit.MINUTES.toMillis(1));
+        context.getBean(VenueService.class).setVenue(venue);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyVenue() {
+        store.drop();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * @return reservation result, or hold failure if the service rejected the hold
+     */
+    @Benchmark
+    public ServiceResult<?> holdAndReserve(Customer customer, Outcomes outcomes) {
+        final ServiceResult<SeatHold> hold = ticketService.tryFindAndHoldSeats(numSeats, customer.email);
+        if (!hold.isOk()) {
+            outcomes.failed++;
+            return hold;
+        }
+        final ServiceResult<String> reserve = ticketService.tryReserveSeats(hold.getValue().getId(), customer.email);
+        if (reserve.isOk()) {
+            outcomes.reserved++;
+        } else {
+            outcomes.failed++;
+        }
+        return reserve;
+    }
+
+    /**
+     * Runs the benchmark at every thread count. Arguments are JMH options, e.g. -p numSeats=10 -prof gc
+     */
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final Map<Integer, Collection<RunResult>> results = new LinkedHashMap<>();
+        for (int threads : THREADS) {
+            results.put(threads, new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .include(TicketServiceBenchmark.class.getName() + ".holdAndReserve")
+                    .threads(threads)
+                    .build()).run());
+        }
+
+        System.out.println();
+        System.out.printf("%8s %10s %14s %10s %14s %10s %12s%n", "threads", "numSeats", "ops/s", "error", "reserved/s",
+                "res/s/thr", "failed/s");
+        boolean failures = false;
+        for (Map.Entry<Integer, Collection<RunResult>> entry : results.entrySet()) {
+            final int threads = entry.getKey();
+            for (RunResult run : entry.getValue()) {
+                final double reserved = score(run, "reserved");
+                final double failed = score(run, "failed");
+                failures |= failed > 0;
+                System.out.printf("%8d %10s %14.1f %10.1f %14.1f %10.1f %12.1f%n", threads, run.getParams().getParam("numSeats"),
+                        run.getPrimaryResult().getScore(), run.getPrimaryResult().getScoreError(), reserved,
+                        reserved / threads, failed);
+            }
+        }
+        if (failures) {
+            System.out.println();
+            System.out.println("WARNING: some operations failed, most likely the venue sold out during an iteration. "
+                    + "ops/s includes cheap failures, compare reserved/s or shorten iterations, e.g. -r 200ms");
+        }
+    }
+
+    private static double score(RunResult run, String counter) {
+        final Result<?> result = run.getSecondaryResults().get(counter);
+        return result == null ? 0 : result.getScore();
+    }
+}
@@ -0,0 +1,144 @@
+package com.rockyrunstream.walmart.impl.finder;
+
+import com.rockyrunstream.walmart.VenueGenerator;
+import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.rockyrunstream.walmart.impl.model.Venue.PENDING;
+
+/**
+ * SimpleSeatFinder over venue size, fragmentation and request size. Run with the GC profiler to get allocation rate
+ * per operation: gradle jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatFinderBenchmark {
+
+    public enum Pattern {
+        EMPTY,
+        /**
+         * Every 10th seat is taken, many short segments
+         */
+        EVERY_10TH,
+        /**
+         * 30% of seats taken at random
+         */
+        RANDOM,
+        /**
+         * Seats taken at random until 5% of the venue or twice the request is left
+         */
+        NEARLY_FULL
+    }
+
+    /**
+     * Rows x seats, 1K to 1M seats
+     */
+    @Param({"20x50", "100x100", "250x400", "1000x1000"})
+    private String venueSize;
+
+    @Param({"EMPTY", "EVERY_10TH", "RANDOM", "NEARLY_FULL"})
+    private Pattern pattern;
+
+    @Param({"1", "4", "25", "500"})
+    private int numSeats;
+
+    private AnnotationConfigApplicationContext context;
+
+    private SeatFinder finder;
+
+    private Venue venue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        //1. Finder, metrics are measured separately
+        context = new AnnotationConfigApplicationContext(FinderContextConfiguration.class);
+        context.getBean(MetricsRegistry.class).setEnabled(false);
+        finder = context.getBean(SimpleSeatFinder.class);
+
+        //2. Venue
+        final String[] size = venueSize.split("x");
+        final Venue prototype = VenueGenerator.generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        prototype.setMaxHoldTime(1_000); //Irrelevant for the finder
+        final VenueService venueService = new VenueService();
+        venueService.setVenue(prototype);
+        venue = venueService.getVenue();
+        venue.setPending(take(venue, pattern, numSeats));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Segment> find() {
+        return finder.find(venue, numSeats);
+    }
+
+    /**
+     * @return number of seats taken
+     */
+    private static int take(Venue venue, Pattern pattern, int numSeats) {
+        final byte[][] rows = venue.getRows();
+        final Random random = new Random(42);
+        int taken = 0;
+        switch (pattern) {
+            case EMPTY:
+                break;
+            case EVERY_10TH:
+                for (byte[] seats : rows) {
+                    for (int i = 0; i < seats.length; i += 10) {
+                        seats[i] = PENDING;
+                        taken++;
+                    }
+                }
+                break;
+            case RANDOM:
+                taken = takeRandom(rows, random, venue.getCapacity() * 3 / 10);
+                break;
+            case NEARLY_FULL:
+                final int free = Math.max(venue.getCapacity() / 20, numSeats * 2);
+                taken = takeRandom(rows, random, Math.max(0, venue.getCapacity() - free));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+        return taken;
+    }
+
+    private static int takeRandom(byte[][] rows, Random random, int count) {
+        int taken = 0;
+        while (taken < count) {
+            final byte[] seats = rows[random.nextInt(rows.length)];
+            final int seat = random.nextInt(seats.length);
+            if (seats[seat] != PENDING) {
+                seats[seat] = PENDING;
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
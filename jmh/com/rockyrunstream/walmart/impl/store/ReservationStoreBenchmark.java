@@ -0,0 +1,201 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import com.rockyrunstream.walmart.ServiceResult;
+import com.rockyrunstream.walmart.impl.model.Reservation;
+import com.rockyrunstream.walmart.impl.model.ReservationSeat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.rockyrunstream.walmart.impl.model.Reservation.State.PENDING;
+import static com.rockyrunstream.walmart.impl.model.Reservation.State.RELEASED;
+
+/**
+ * ReservationStore under concurrent readers and writers. Each group runs all four operations at once against one
+ * store, groups differ by read/write ratio:
+ *  - writeHeavy: 2 create, 2 update, 1 getSeatMap, 1 countReserved thread
+ *  - readHeavy: 1 create, 1 update, 3 getSeatMap, 3 countReserved threads
+ * Other ratios can be run with -tg, e.g. -tg 1,1,8,8
+ *
+ * Writers own a row each, so they never collide and measure the lock rather than optimistic lock failures:
+ *  - create holds a seat and releases it with an update, the seat is reused by the next call
+ *  - update extends a hold owned by the thread
+ * Released holds stay in the store, so it is rebuilt every iteration
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationStoreBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private static final int SEATS = 100;
+
+    private static final String EMAIL = "customer@example.com";
+
+    @State(Scope.Group)
+    public static class StoreState {
+
+        /**
+         * Share of rows reserved before the iteration, percent. Seat map copy time is proportional to it
+         */
+        @Param({"10", "50"})
+        private int occupancy;
+
+        private ReservationStore store;
+
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        /**
+         * Writer rows are allocated from the end, away from reserved rows
+         */
+        private final AtomicInteger nextWriterRow = new AtomicInteger();
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            //1. Store
+            if (store == null) {
+                store = new ReservationStore();
+                ReflectionTestUtils.setField(store, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+            }
+            store.drop();
+            nextId.set(0);
+            nextWriterRow.set(ROWS - 1);
+
+            //2. Reserved rows
+            final long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+            for (int row = 0; row < ROWS * occupancy / 100; row++) {
+                final List<ReservationSeat> seats = new ArrayList<>(SEATS);
+                for (int seat = 0; seat < SEATS; seat++) {
+                    seats.add(new ReservationSeat(row, seat));
+                }
+                final Reservation hold = store.createReservation(reservation(seats, expiresAt));
+                store.commitHold(hold.getSeatHoldId(), EMAIL, System.currentTimeMillis(), "code");
+            }
+        }
+
+        private Reservation reservation(List<ReservationSeat> seats, long expiresAt) {
+            final int id = nextId.incrementAndGet();
+            final Reservation reservation = new Reservation();
+            reservation.setId(id);
+            reservation.setSeatHoldId(id);
+            reservation.setEmail(EMAIL);
+            reservation.setState(PENDING);
+            reservation.setExpiresAt(expiresAt);
+            reservation.setSeats(seats);
+            return reservation;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+
+        private int row;
+
+        /**
+         * Hold extended by update, its copy with the latest transaction ID
+         */
+        private Reservation hold;
+
+        @Setup(Level.Iteration)
+        public void setup(StoreState state) {
+            row = state.nextWriterRow.getAndDecrement();
+            hold = state.store.createReservation(state.reservation(Collections.singletonList(new ReservationSeat(row, 1)),
+                    System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+        }
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(2)
+    public ServiceResult<Reservation> writeHeavyCreate(StoreState state, WriterState writer) {
+        return createAndRelease(state, writer);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(2)
+    public ServiceResult<Reservation> writeHeavyUpdate(StoreState state, WriterState writer) {
+        return extendHold(state, writer);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public SeatMap writeHeavyGetSeatMap(StoreState state) {
+        return state.store.getSeatMap();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public SeatsCounter writeHeavyCountReserved(StoreState state) {
+        return state.store.countReserved();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public ServiceResult<Reservation> readHeavyCreate(StoreState state, WriterState writer) {
+        return createAndRelease(state, writer);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public ServiceResult<Reservation> readHeavyUpdate(StoreState state, WriterState writer) {
+        return extendHold(state, writer);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public SeatMap readHeavyGetSeatMap(StoreState state) {
+        return state.store.getSeatMap();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public SeatsCounter readHeavyCountReserved(StoreState state) {
+        return state.store.countReserved();
+    }
+
+    private static ServiceResult<Reservation> createAndRelease(StoreState state, WriterState writer) {
+        //1. Hold the first seat of the row
+        final Reservation hold = state.store.tryCreateReservation(state.reservation(
+                Collections.singletonList(new ReservationSeat(writer.row, 0)), System.currentTimeMillis() + 60_000)).orThrow();
+
+        //2. Release it, so the next call can hold it again
+        hold.setState(RELEASED);
+        return state.store.tryUpdateReservation(hold);
+    }
+
+    private static ServiceResult<Reservation> extendHold(StoreState state, WriterState writer) {
+        writer.hold.setExpiresAt(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        final ServiceResult<Reservation> result = state.store.tryUpdateReservation(writer.hold);
+        writer.hold = result.orThrow();
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package com.rockyrunstream.walmart;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking flavour of {@link TicketService}. Every method returns immediately, the work is done on service owned
+ * executors. Futures complete exceptionally with the same {@link ServiceException}s the blocking service throws
+ */
+public interface AsyncTicketService {
+    /**
+     * The number of seats in the venue that are neither held nor reserved
+     *
+     * @return the number of tickets available in the venue
+     */
+    CompletableFuture<Integer> numSeatsAvailable();
+
+    /**
+     * Find and hold the best available seats for a customer
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a SeatHold object identifying the specific seats and related
+    information
+     */
+    CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail);
+
+    /**
+     * Same as {@link #findAndHoldSeats(int, String)}, but a repeated request with the same idempotency key returns
+     * the original seat hold instead of holding more seats
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @param idempotencyKey client generated key, unique per customer request. Null disables deduplication
+     * @return a SeatHold object identifying the specific seats and related information
+     */
+    CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey);
+
+    /**
+     * Commit seats held for a specific customer
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     * @return a reservation confirmation code
+     */
+    CompletableFuture<String> reserveSeats(int seatHoldId, String customerEmail);
+
+    /**
+     * Release seats held for a specific customer
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     */
+    CompletableFuture<Void> releaseHold(int seatHoldId, String customerEmail);
+
+    /**
+     * Seat holds of a customer that are not reserved, released or expired yet
+     *
+     * @param customerEmail unique identifier for the customer
+     * @return customer's active seat holds
+     */
+    CompletableFuture<List<SeatHold>> getHoldsByCustomer(String customerEmail);
+
+    /**
+     * Reserved seats of a customer. Confirmation codes are not returned
+     *
+     * @param customerEmail unique identifier for the customer
+     * @return customer's reservations
+     */
+    CompletableFuture<List<SeatReservation>> getReservationsByCustomer(String customerEmail);
+}
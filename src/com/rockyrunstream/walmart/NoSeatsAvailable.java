@@ -16,4 +16,8 @@ public class NoSeatsAvailable extends ServiceException {
         this.available = available;
         this.pending = pending;
     }
+
+    public NoSeatsAvailable(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,11 @@
+package com.rockyrunstream.walmart;
+
+/**
+ * Customer sent too many requests recently. Client can repeat request later
+ */
+public class RequestThrottled extends ServiceException {
+
+    public RequestThrottled(String message) {
+        super(message);
+    }
+}
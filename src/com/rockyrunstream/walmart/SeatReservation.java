@@ -0,0 +1,37 @@
+package com.rockyrunstream.walmart;
+
+import java.util.List;
+
+/**
+ * Reserved seats of a customer. Confirmation code is not included, it is returned once by reserveSeats
+ */
+public class SeatReservation {
+
+    private int seatHoldId;
+
+    private List<Seat> seats;
+
+    public int getSeatHoldId() {
+        return seatHoldId;
+    }
+
+    public void setSeatHoldId(int seatHoldId) {
+        this.seatHoldId = seatHoldId;
+    }
+
+    public List<Seat> getSeats() {
+        return seats;
+    }
+
+    public void setSeats(List<Seat> seats) {
+        this.seats = seats;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatReservation{" +
+                "seatHoldId=" + seatHoldId +
+                ", seats=" + seats +
+                '}';
+    }
+}
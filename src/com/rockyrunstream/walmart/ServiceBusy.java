@@ -0,0 +1,11 @@
+package com.rockyrunstream.walmart;
+
+/**
+ * Service is overloaded and sheds the request before doing any work. Client should try later
+ */
+public class ServiceBusy extends ServiceException {
+
+    public ServiceBusy(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,111 @@
+package com.rockyrunstream.walmart;
+
+/**
+ * Outcome of a service operation. Expected failures, such as optimistic lock collisions or expired holds, happen
+ * thousands of times per minute during a sale. Reporting them with a result object is much cheaper than throwing an
+ * exception with a stack trace.
+ *
+ * Unexpected problems are still reported with exceptions
+ */
+public final class ServiceResult<T> {
+
+    public enum Status {
+        OK, BAD_REQUEST, NO_SEATS_AVAILABLE, OPTIMISTIC_LOCK, DATA_EXPIRED, SERVICE_BUSY, THROTTLED
+    }
+
+    private final Status status;
+    private final T value;
+    private final String message;
+
+    private ServiceResult(Status status, T value, String message) {
+        this.status = status;
+        this.value = value;
+        this.message = message;
+    }
+
+    public static <T> ServiceResult<T> ok(T value) {
+        return new ServiceResult<>(Status.OK, value, null);
+    }
+
+    public static <T> ServiceResult<T> failure(Status status, String message) {
+        if (status == Status.OK) {
+            throw new InternalServiceException("Failure must not have OK status");
+        }
+        return new ServiceResult<>(status, null, message);
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return operation result, null if the operation failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return failure description, null if the operation succeed
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Re-types a failure, so it can be returned by an operation with another result type
+     */
+    @SuppressWarnings("unchecked")
+    public <U> ServiceResult<U> asFailure() {
+        if (isOk()) {
+            throw new InternalServiceException("Result is not a failure");
+        }
+        return (ServiceResult<U>) this;
+    }
+
+    /**
+     * @return operation result if the operation succeed
+     * @throws ServiceException matching the failure status
+     */
+    public T orThrow() {
+        if (isOk()) {
+            return value;
+        }
+        throw toException();
+    }
+
+    /**
+     * @return exception matching the failure status
+     */
+    public ServiceException toException() {
+        switch (status) {
+            case BAD_REQUEST:
+                return new BadRequestException(message);
+            case NO_SEATS_AVAILABLE:
+                return new NoSeatsAvailable(message);
+            case OPTIMISTIC_LOCK:
+                return new OptimisticLockException(message);
+            case DATA_EXPIRED:
+                return new DataExpired(message);
+            case SERVICE_BUSY:
+                return new ServiceBusy(message);
+            case THROTTLED:
+                return new RequestThrottled(message);
+            default:
+                throw new InternalServiceException("Result is not a failure");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceResult{" +
+                "status=" + status +
+                ", value=" + value +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.rockyrunstream.walmart;
 
+import java.util.List;
+
 public interface TicketService {
     /**
      * The number of seats in the venue that are neither held nor reserved
@@ -18,6 +20,17 @@ public interface TicketService {
      */
     SeatHold findAndHoldSeats(int numSeats, String customerEmail);
 
+    /**
+     * Same as {@link #findAndHoldSeats(int, String)}, but a repeated request with the same idempotency key returns
+     * the original seat hold instead of holding more seats. Use it for client retries after timeouts
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @param idempotencyKey client generated key, unique per customer request. Null disables deduplication
+     * @return a SeatHold object identifying the specific seats and related information
+     */
+    SeatHold findAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey);
+
     /**
      * Commit seats held for a specific customer
      *
@@ -27,4 +40,81 @@ public interface TicketService {
      * @return a reservation confirmation code
      */
     String reserveSeats(int seatHoldId, String customerEmail);
-}
\ No newline at end of file
+
+    /**
+     * Release seats held for a specific customer. Seats become available immediately. Releasing an expired or
+     * already released hold does nothing
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     */
+    void releaseHold(int seatHoldId, String customerEmail);
+
+    /**
+     * Seat holds of a customer that are not reserved, released or expired yet
+     *
+     * @param customerEmail unique identifier for the customer
+     * @return customer's active seat holds
+     */
+    List<SeatHold> getHoldsByCustomer(String customerEmail);
+
+    /**
+     * Reserved seats of a customer. Confirmation codes are not returned
+     *
+     * @param customerEmail unique identifier for the customer
+     * @return customer's reservations
+     */
+    List<SeatReservation> getReservationsByCustomer(String customerEmail);
+
+    /**
+     * Checks a reservation confirmation code, e.g. at the venue entrance. Costs one index lookup and one hash
+     *
+     * @param confirmationCode the code returned by {@link #reserveSeats(int, String)}
+     * @return true if the code confirms a reservation
+     */
+    boolean verifyConfirmation(String confirmationCode);
+
+    /**
+     * Same as {@link #findAndHoldSeats(int, String)}, but expected failures are returned as a result status instead
+     * of an exception
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a SeatHold object or failure status
+     */
+    ServiceResult<SeatHold> tryFindAndHoldSeats(int numSeats, String customerEmail);
+
+    /**
+     * Same as {@link #findAndHoldSeats(int, String, String)}, but expected failures are returned as a result status
+     * instead of an exception
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @param idempotencyKey client generated key, unique per customer request. Null disables deduplication
+     * @return a SeatHold object or failure status
+     */
+    ServiceResult<SeatHold> tryFindAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey);
+
+    /**
+     * Same as {@link #reserveSeats(int, String)}, but expected failures are returned as a result status instead
+     * of an exception
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     * @return a reservation confirmation code or failure status
+     */
+    ServiceResult<String> tryReserveSeats(int seatHoldId, String customerEmail);
+
+    /**
+     * Same as {@link #releaseHold(int, String)}, but expected failures are returned as a result status instead
+     * of an exception
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the
+    seat hold is assigned
+     * @return OK or failure status
+     */
+    ServiceResult<Void> tryReleaseHold(int seatHoldId, String customerEmail);
+}
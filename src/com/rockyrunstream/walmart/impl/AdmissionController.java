@@ -0,0 +1,421 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.ServiceResult;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.rockyrunstream.walmart.ServiceResult.Status.SERVICE_BUSY;
+
+/**
+ * Limits number of concurrent seat holds. Under contention every extra hold makes optimistic retries more likely, so
+ * past some point more concurrency means less throughput.
+ *
+ * The limit adapts with AIMD. Completed holds are measured in windows, a window with high retry rate or latency much
+ * higher than the baseline cuts the limit, otherwise the limit grows by one if it was reached. Baseline is the lowest
+ * window latency, it drifts up slowly, so a permanently slower service is not punished forever.
+ *
+ * Requests over the limit wait in a bounded FIFO waiting room until their deadline. When the room is full or the
+ * deadline passes the request is rejected with SERVICE_BUSY. Blocking callers park in {@link #admit()}, async callers
+ * get a future from {@link #admitAsync()} and do not hold a thread while they wait
+ */
+@Service
+public class AdmissionController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double BASELINE_DRIFT = 1.05;
+
+    /*
+     * Configuration
+     */
+    private int minLimit = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int maxLimit = 256;
+    private int queueCapacity = 1_000;
+    private long maxWaitMillis = 1_000;
+    private int windowSize = 100;
+    private double maxRetryRate = 1;
+    private double latencyTolerance = 2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Times out async waiters, the thread is started on first use
+     */
+    private final ScheduledThreadPoolExecutor deadlines = createDeadlineTimer();
+
+    /*
+     * Guarded by lock
+     */
+    private final ArrayDeque<Waiter> waitingRoom = new ArrayDeque<>();
+    private int limit = minLimit;
+    private int inFlight;
+    private boolean limitReached;
+    private int windowCompleted;
+    private long windowLatency;
+    private long baselineLatency;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private volatile double lastRetryRate;
+    private volatile long lastLatency;
+
+    /**
+     * Admits a request, waits in the waiting room if the limit is reached
+     *
+     * @return admission, must be closed when the work is done, or SERVICE_BUSY failure
+     */
+    public ServiceResult<Admission> admit() {
+        return admit(maxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param timeout max time to wait in the waiting room
+     */
+    public ServiceResult<Admission> admit(long timeout, TimeUnit unit) {
+        lock.lock();
+        try {
+            //1. Fast path
+            if (inFlight < limit && waitingRoom.isEmpty()) {
+                return start();
+            }
+            limitReached = true;
+
+            //2. Waiting room
+            if (waitingRoom.size() >= queueCapacity) {
+                rejected.increment();
+                return ServiceResult.failure(SERVICE_BUSY, "Service busy, try later");
+            }
+            final Waiter waiter = new Waiter(lock.newCondition(), null);
+            waitingRoom.addLast(waiter);
+            queued.increment();
+
+            long remaining = unit.toNanos(timeout);
+            try {
+                while (!waiter.admitted) {
+                    if (remaining <= 0) {
+                        waitingRoom.remove(waiter);
+                        timedOut.increment();
+                        return ServiceResult.failure(SERVICE_BUSY, "Service busy, try later");
+                    }
+                    remaining = waiter.turn.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!waiter.admitted) {
+                    waitingRoom.remove(waiter);
+                    timedOut.increment();
+                    return ServiceResult.failure(SERVICE_BUSY, "Service busy, try later");
+                }
+            }
+            //In-flight counter was incremented by the thread that admitted the waiter
+            admitted.increment();
+            return ServiceResult.ok(new Admission());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking {@link #admit()}. A request over the limit waits in the same waiting room, but no thread is parked,
+     * the future completes when a slot frees up or the deadline passes
+     *
+     * @return admission, must be closed when the work is done, or SERVICE_BUSY failure
+     */
+    public CompletableFuture<ServiceResult<Admission>> admitAsync() {
+        final Waiter waiter;
+        lock.lock();
+        try {
+            //1. Fast path
+            if (inFlight < limit && waitingRoom.isEmpty()) {
+                return CompletableFuture.completedFuture(start());
+            }
+            limitReached = true;
+
+            //2. Waiting room
+            if (waitingRoom.size() >= queueCapacity) {
+                rejected.increment();
+                return CompletableFuture.completedFuture(ServiceResult.failure(SERVICE_BUSY, "Service busy, try later"));
+            }
+            waiter = new Waiter(null, new CompletableFuture<>());
+            waitingRoom.addLast(waiter);
+            queued.increment();
+        } finally {
+            lock.unlock();
+        }
+        waiter.deadline = deadlines.schedule(() -> timeout(waiter), maxWaitMillis, TimeUnit.MILLISECONDS);
+        return waiter.future;
+    }
+
+    private void timeout(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.admitted) {
+                return;
+            }
+            waitingRoom.remove(waiter);
+            timedOut.increment();
+        } finally {
+            lock.unlock();
+        }
+        waiter.future.complete(ServiceResult.failure(SERVICE_BUSY, "Service busy, try later"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlines.shutdownNow();
+    }
+
+    /**
+     * Notifies the controller about an optimistic lock retry
+     */
+    public void onRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Must be called under the lock
+     */
+    private ServiceResult<Admission> start() {
+        inFlight++;
+        admitted.increment();
+        return ServiceResult.ok(new Admission());
+    }
+
+    private void complete(long latency) {
+        //Async waiters are completed outside the lock, their continuations might run on this thread
+        List<Waiter> admittedAsync = null;
+        lock.lock();
+        try {
+            inFlight--;
+
+            //1. Adjust limit once per window
+            windowLatency += latency;
+            if (++windowCompleted >= windowSize) {
+                adjustLimit();
+            }
+
+            //2. Admit waiters in FIFO order
+            while (inFlight < limit && !waitingRoom.isEmpty()) {
+                final Waiter waiter = waitingRoom.pollFirst();
+                waiter.admitted = true;
+                inFlight++;
+                if (waiter.future == null) {
+                    waiter.turn.signal();
+                } else {
+                    admitted.increment();
+                    if (admittedAsync == null) {
+                        admittedAsync = new ArrayList<>();
+                    }
+                    admittedAsync.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (admittedAsync != null) {
+            for (Waiter waiter : admittedAsync) {
+                if (waiter.deadline != null) {
+                    waiter.deadline.cancel(false);
+                }
+                waiter.future.complete(ServiceResult.ok(new Admission()));
+            }
+        }
+    }
+
+    /**
+     * Must be called under the lock
+     */
+    private void adjustLimit() {
+        final long latency = windowLatency / windowCompleted;
+        final double retryRate = (double) retries.sumThenReset() / windowCompleted;
+        baselineLatency = baselineLatency == 0 ? latency : Math.min(latency, (long) (baselineLatency * BASELINE_DRIFT));
+
+        final int previous = limit;
+        if (retryRate > maxRetryRate || latency > baselineLatency * latencyTolerance) {
+            limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        } else if (limitReached) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        if (limit != previous) {
+            log.debug("Admission limit {} -> {}, latency {} ns, baseline {} ns, retry rate {}", previous, limit, latency,
+                    baselineLatency, retryRate);
+        }
+
+        lastLatency = latency;
+        lastRetryRate = retryRate;
+        windowCompleted = 0;
+        windowLatency = 0;
+        limitReached = false;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return waitingRoom.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * @return requests rejected because the waiting room was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return requests rejected because the deadline passed in the waiting room
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return optimistic lock retries per request in the last window
+     */
+    public double getLastRetryRate() {
+        return lastRetryRate;
+    }
+
+    public double getLastLatencyMillis() {
+        return lastLatency / 1_000_000d;
+    }
+
+    public void setMinLimit(int minLimit) {
+        lock.lock();
+        try {
+            this.minLimit = minLimit;
+            this.limit = Math.max(limit, minLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        lock.lock();
+        try {
+            this.maxLimit = maxLimit;
+            this.limit = Math.min(limit, maxLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @param windowSize number of completed requests the limit is adjusted after
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @param maxRetryRate optimistic lock retries per request that cut the limit
+     */
+    public void setMaxRetryRate(double maxRetryRate) {
+        this.maxRetryRate = maxRetryRate;
+    }
+
+    /**
+     * @param latencyTolerance latency / baseline latency ratio that cuts the limit
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Admitted request. Closing it frees the slot for the next request
+     */
+    public class Admission implements AutoCloseable {
+
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                complete(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineTimer() {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory.Builder()
+                .namingPattern("admission-deadline-%d")
+                .daemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Blocking waiter waits for the turn condition, async waiter is notified with the future
+     */
+    private static class Waiter {
+        private final Condition turn;
+        private final CompletableFuture<ServiceResult<Admission>> future;
+        private volatile ScheduledFuture<?> deadline;
+        private boolean admitted;
+
+        Waiter(Condition turn, CompletableFuture<ServiceResult<Admission>> future) {
+            this.turn = turn;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.AsyncTicketService;
+import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.SeatReservation;
+import com.rockyrunstream.walmart.ServiceResult;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs {@link TicketServiceImpl} stages on dedicated executors. Metrics, request traces and trace events are recorded
+ * the same way as for blocking calls:
+ *  - finder executor - seat search, the most CPU expensive part of a hold. Holds over the admission limit wait
+ *  without a thread, see {@link AdmissionController#admitAsync()}
+ *  - store executor - short store reads and commits
+ *  - hashing executor - confirmation token generation, slow hashes are computed later by {@link ConfirmationHasher}
+ *
+ * Executors can be replaced with setters before the bean is initialized, otherwise default pools are created
+ */
+@Service
+public class AsyncTicketServiceImpl implements AsyncTicketService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncTicketServiceImpl.class);
+
+    private static final int DEFAULT_STORE_THREADS = 2;
+
+    @Autowired
+    private TicketServiceImpl ticketService;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    private Executor finderExecutor;
+    private Executor storeExecutor;
+    private Executor hashingExecutor;
+
+    /**
+     * Executors created by this service, must be shut down together with the service
+     */
+    private final List<ExecutorService> ownExecutors = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        if (finderExecutor == null) {
+            finderExecutor = createExecutor("ticket-finder-%d", processors);
+        }
+        if (storeExecutor == null) {
+            storeExecutor = createExecutor("ticket-store-%d", DEFAULT_STORE_THREADS);
+        }
+        if (hashingExecutor == null) {
+            hashingExecutor = createExecutor("ticket-hashing-%d", processors);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ownExecutors.forEach(ExecutorService::shutdown);
+    }
+
+    @Override
+    public CompletableFuture<Integer> numSeatsAvailable() {
+        return CompletableFuture.supplyAsync(ticketService::numSeatsAvailable, storeExecutor);
+    }
+
+    @Override
+    public CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail) {
+        return ticketService.tryFindAndHoldSeatsAsync(numSeats, customerEmail, finderExecutor).thenApply(ServiceResult::orThrow);
+    }
+
+    @Override
+    public CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return findAndHoldSeats(numSeats, customerEmail);
+        }
+        log.debug("findAndHoldSeats numSeats {}, customerEmail {}, idempotencyKey {}", numSeats, customerEmail, idempotencyKey);
+        final ServiceResult<SeatHold> invalid = ticketService.validateHoldRequest(numSeats, customerEmail);
+        if (invalid != null) {
+            return failed(invalid.toException());
+        }
+        return idempotencyCache.getOrHold(customerEmail, idempotencyKey, numSeats,
+                () -> ticketService.tryFindAndHoldSeatsAsync(numSeats, customerEmail, finderExecutor))
+                .thenApply(ServiceResult::orThrow);
+    }
+
+    @Override
+    public CompletableFuture<String> reserveSeats(int seatHoldId, String customerEmail) {
+        return ticketService.tryReserveSeatsAsync(seatHoldId, customerEmail, hashingExecutor, storeExecutor)
+                .thenApply(ServiceResult::orThrow);
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseHold(int seatHoldId, String customerEmail) {
+        log.debug("releaseHold seatHoldId {}, customerEmail {}", seatHoldId, customerEmail);
+        return CompletableFuture.supplyAsync(() -> ticketService.tryReleaseHold(seatHoldId, customerEmail).orThrow(), storeExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<SeatHold>> getHoldsByCustomer(String customerEmail) {
+        return CompletableFuture.supplyAsync(() -> ticketService.getHoldsByCustomer(customerEmail), storeExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<SeatReservation>> getReservationsByCustomer(String customerEmail) {
+        return CompletableFuture.supplyAsync(() -> ticketService.getReservationsByCustomer(customerEmail), storeExecutor);
+    }
+
+    public Executor getFinderExecutor() {
+        return finderExecutor;
+    }
+
+    public void setFinderExecutor(Executor finderExecutor) {
+        this.finderExecutor = finderExecutor;
+    }
+
+    public void setStoreExecutor(Executor storeExecutor) {
+        this.storeExecutor = storeExecutor;
+    }
+
+    public void setHashingExecutor(Executor hashingExecutor) {
+        this.hashingExecutor = hashingExecutor;
+    }
+
+    private ExecutorService createExecutor(String namingPattern, int threads) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+                .namingPattern(namingPattern)
+                .daemon(true)
+                .build());
+        ownExecutors.add(executor);
+        return executor;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+}
@@ -0,0 +1,162 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes slow confirmation code hashes in background. A reservation is committed with a fast commitment first,
+ * the commitment is replaced with the slow hash once it is ready.
+ *
+ * The pool is bounded. When the queue is full the reservation keeps the fast commitment, it is verifiable as well,
+ * see {@link TokenGenerator#verify(char[], String)}. Clients are never slowed down by slow hashes, overflows are
+ * counted
+ */
+@Service
+public class ConfirmationHasher {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfirmationHasher.class);
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    @Autowired
+    private TokenGenerator tokenGenerator;
+
+    @Autowired
+    private ReservationStore reservationStore;
+
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private ThreadPoolExecutor executor;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new BasicThreadFactory.Builder().namingPattern("confirmation-hasher-%d").daemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Schedules slow hash computation for a completed reservation
+     *
+     * @param seatHoldId reservation seat hold id
+     * @param commitment confirmation code stored with the reservation
+     * @param token confirmation token, the array is owned by the hasher and cleaned up after hashing
+     */
+    public void submit(int seatHoldId, String commitment, char[] token) {
+        final long submittedAt = System.nanoTime();
+        submitted.increment();
+        final Runnable task = () -> {
+            try {
+                final String hash = tokenGenerator.hash(token);
+                if (!reservationStore.updateConfirmationCode(seatHoldId, commitment, hash)) {
+                    log.warn("Confirmation code was not updated, seatHoldId {}", seatHoldId);
+                }
+                hashed.increment();
+            } catch (RuntimeException e) {
+                log.error("Failed to hash confirmation code, seatHoldId " + seatHoldId, e);
+                failed.increment();
+            } finally {
+                Arrays.fill(token, '*');
+                final long latency = System.nanoTime() - submittedAt;
+                totalLatency.add(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            //Keep the commitment, the token is not needed anymore
+            Arrays.fill(token, '*');
+            if (executor.isShutdown()) {
+                dropped.increment();
+            } else {
+                overflows.increment();
+            }
+        }
+    }
+
+    /**
+     * @return number of hashes waiting in the queue or being computed
+     */
+    public int getBacklog() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getHashedCount() {
+        return hashed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return reservations left with the fast commitment because the queue was full
+     */
+    public long getOverflowCount() {
+        return overflows.sum();
+    }
+
+    /**
+     * @return reservations left with the fast commitment because the hasher was shut down
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return average time between submission and persisted hash
+     */
+    public double getAverageLatencyMillis() {
+        final long count = hashed.sum() + failed.sum();
+        return count == 0 ? 0 : totalLatency.sum() / (double) count / 1_000_000D;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatency.get() / 1_000_000D;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,102 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Per-customer limits, checked before a request touches the store:
+ *  - holds - one customer must not hoard seats
+ *  - failed reserve attempts - guessing seat hold ids costs a token per wrong guess. The bucket is keyed by the email
+ *  the caller passes, so anyone can drain it. Owners of a hold are never throttled, only failing requests are
+ *
+ * Buckets are striped by customer email, see {@link StripedTokenBucket}
+ */
+@Service
+public class CustomerThrottle {
+
+    private static final int STRIPES = 16_384;
+
+    private volatile boolean enabled = true;
+
+    private volatile StripedTokenBucket holds = new StripedTokenBucket(STRIPES, 50, 10, System.currentTimeMillis());
+
+    private volatile StripedTokenBucket failedReserves = new StripedTokenBucket(STRIPES, 10, 1, System.currentTimeMillis());
+
+    /*
+     * Metrics
+     */
+    private final LongAdder throttledHolds = new LongAdder();
+    private final LongAdder throttledReserves = new LongAdder();
+    private final LongAdder failedReserveCount = new LongAdder();
+
+    /**
+     * @return false if the customer created too many holds recently
+     */
+    public boolean tryHold(String customerEmail) {
+        if (!enabled || holds.tryAcquire(customerEmail, System.currentTimeMillis())) {
+            return true;
+        }
+        throttledHolds.increment();
+        return false;
+    }
+
+    /**
+     * @param ownsHold checked only if the customer is out of tokens, true if the customer owns the seat hold
+     * @return false if the customer failed too many reserve attempts recently and does not own the seat hold
+     */
+    public boolean isReserveAllowed(String customerEmail, BooleanSupplier ownsHold) {
+        if (!enabled || failedReserves.hasToken(customerEmail, System.currentTimeMillis()) || ownsHold.getAsBoolean()) {
+            return true;
+        }
+        throttledReserves.increment();
+        return false;
+    }
+
+    /**
+     * Charges the customer for a reserve attempt with unknown seat hold id or wrong email
+     */
+    public void reserveFailed(String customerEmail) {
+        failedReserveCount.increment();
+        if (enabled) {
+            failedReserves.tryAcquire(customerEmail, System.currentTimeMillis());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param burst     holds a customer can create at once
+     * @param perSecond sustained holds per second
+     */
+    public void setHoldLimit(int burst, double perSecond) {
+        this.holds = new StripedTokenBucket(STRIPES, burst, perSecond, System.currentTimeMillis());
+    }
+
+    /**
+     * @param burst     failed reserve attempts a customer can make at once
+     * @param perSecond sustained failed reserve attempts per second
+     */
+    public void setFailedReserveLimit(int burst, double perSecond) {
+        this.failedReserves = new StripedTokenBucket(STRIPES, burst, perSecond, System.currentTimeMillis());
+    }
+
+    public long getThrottledHoldCount() {
+        return throttledHolds.sum();
+    }
+
+    public long getThrottledReserveCount() {
+        return throttledReserves.sum();
+    }
+
+    public long getFailedReserveCount() {
+        return failedReserveCount.sum();
+    }
+}
@@ -0,0 +1,173 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.impl.jfr.ExpiryBatchEvent;
+import com.rockyrunstream.walmart.impl.jfr.FlightEvents;
+import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Expires pending holds. Dedicated thread sleeps until the deadline of the oldest hold and expires all due holds in one
+ * store operation. A new hold that expires earlier than the current deadline wakes the thread up.
+ *
+ * Store expires overdue holds lazily as well, so precise timing is not critical for correctness, the worker makes
+ * sure seats are released even if nobody touches the store
+ */
+@Service
+public class ExpiryWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryWorker.class);
+
+    @Autowired
+    private ReservationStore reservationStore;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+
+    /**
+     * Time the worker must wake up at, guarded by lock
+     */
+    private long wakeUpAt = Long.MAX_VALUE;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalLag = new LongAdder();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile long lastLag;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "hold-expiry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    /**
+     * Notifies the worker about a new hold
+     *
+     * @param expiresAt hold expiration time
+     */
+    public void holdCreated(long expiresAt) {
+        lock.lock();
+        try {
+            if (expiresAt < wakeUpAt) {
+                wakeUpAt = expiresAt;
+                wakeUp.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        log.info("Hold expiry worker started");
+        while (running) {
+            try {
+                //1. Forget the deadline, from now on every new hold lowers it
+                lock.lock();
+                try {
+                    wakeUpAt = Long.MAX_VALUE;
+                } finally {
+                    lock.unlock();
+                }
+
+                //2. Expire due holds
+                final ExpiryBatchEvent event = FlightEvents.AVAILABLE ? new ExpiryBatchEvent() : null;
+                if (event != null) {
+                    event.begin();
+                }
+                final long now = System.currentTimeMillis();
+                final long[] deadlines = reservationStore.expireDue(now);
+                if (deadlines.length > 0) {
+                    recordBatch(deadlines, now);
+                    if (event != null && event.shouldCommit()) {
+                        event.expired = deadlines.length;
+                        //Deadlines are in expiration order
+                        event.maxLag = now - deadlines[0];
+                        event.commit();
+                    }
+                }
+
+                //3. Sleep until the next deadline. Hold is overdue when its deadline is in the past, so add 1 ms
+                final long next = reservationStore.nextExpiration();
+                lock.lock();
+                try {
+                    wakeUpAt = Math.min(wakeUpAt, next);
+                    while (running && wakeUpAt != Long.MAX_VALUE && System.currentTimeMillis() <= wakeUpAt) {
+                        wakeUp.await(wakeUpAt + 1 - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    while (running && wakeUpAt == Long.MAX_VALUE) {
+                        wakeUp.await();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } catch (InterruptedException e) {
+                log.debug("Hold expiry worker interrupted");
+            } catch (RuntimeException e) {
+                log.error("Hold expiry failed", e);
+            }
+        }
+        log.info("Hold expiry worker stopped");
+    }
+
+    private void recordBatch(long[] deadlines, long now) {
+        batches.increment();
+        expired.add(deadlines.length);
+        for (long deadline : deadlines) {
+            final long lag = now - deadline;
+            totalLag.add(lag);
+            maxLag.accumulateAndGet(lag, Math::max);
+            lastLag = lag;
+        }
+        log.debug("Expired {} holds", deadlines.length);
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return average time between hold deadline and actual release, ms
+     */
+    public double getAverageLagMillis() {
+        final long count = expired.sum();
+        return count == 0 ? 0 : totalLag.sum() / (double) count;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLag.get();
+    }
+
+    public long getLastLagMillis() {
+        return lastLag;
+    }
+}
@@ -0,0 +1,115 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.InternalServiceException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * Keyed format-preserving permutation of [0, 2^bits) numbers. Balanced Feistel network with AES as a round function.
+ * Odd domains are handled with cycle walking over the next even domain.
+ *
+ * Without the key the next value can not be predicted from previous values, so a permutation of a simple counter
+ * gives unique and unguessable numbers
+ */
+class FeistelPermutation {
+
+    private static final int ROUNDS = 8;
+
+    private static final String CIPHER = "AES/ECB/NoPadding";
+
+    private final int bits;
+    private final int halfBits;
+    private final long halfMask;
+    private final long domainSize;
+    private final ThreadLocal<Cipher> cipher;
+
+    FeistelPermutation(byte[] key, int bits) {
+        if (bits <= 0 || bits > 62) {
+            throw new InternalServiceException("Unsupported permutation size " + bits);
+        }
+        this.bits = bits;
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        this.domainSize = 1L << bits;
+        final SecretKeySpec keySpec = new SecretKeySpec(key.clone(), "AES");
+        this.cipher = ThreadLocal.withInitial(() -> {
+            try {
+                final Cipher instance = Cipher.getInstance(CIPHER);
+                instance.init(Cipher.ENCRYPT_MODE, keySpec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new InternalServiceException("Failed to init cipher " + CIPHER, e);
+            }
+        });
+    }
+
+    long encrypt(long value) {
+        checkDomain(value);
+        long result = value;
+        do {
+            result = encryptOnce(result);
+        } while (result >= domainSize);
+        return result;
+    }
+
+    long decrypt(long value) {
+        checkDomain(value);
+        long result = value;
+        do {
+            result = decryptOnce(result);
+        } while (result >= domainSize);
+        return result;
+    }
+
+    int getBits() {
+        return bits;
+    }
+
+    private long encryptOnce(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long next = left ^ roundFunction(round, right);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decryptOnce(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            final long previous = right ^ roundFunction(round, left);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long roundFunction(int round, long value) {
+        final byte[] block = new byte[16];
+        block[0] = (byte) round;
+        for (int i = 0; i < 8; i++) {
+            block[8 + i] = (byte) (value >>> (56 - 8 * i));
+        }
+        try {
+            final byte[] encrypted = cipher.get().doFinal(block);
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (encrypted[i] & 0xFF);
+            }
+            return result & halfMask;
+        } catch (GeneralSecurityException e) {
+            throw new InternalServiceException("Failed to compute round function", e);
+        }
+    }
+
+    private void checkDomain(long value) {
+        if (value < 0 || value >= domainSize) {
+            throw new InternalServiceException("Value is out of permutation domain " + value);
+        }
+    }
+}
@@ -1,47 +1,132 @@
 package com.rockyrunstream.walmart.impl;
 
-import com.rockyrunstream.walmart.InternalServiceException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.rockyrunstream.walmart.ServiceNotReadyException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-import java.util.TreeSet;
+import javax.annotation.PostConstruct;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Generates unique IDs.  SeatHoldId must be unique only limited period of time while they are pending. Sequence must
- * not be used because next number can be easily guessed
+ * not be used because next number can be easily guessed.
+ *
+ * SeatHoldId is a keyed permutation of a counter, so it is unique until the counter wraps and unguessable without
+ * the key. Nothing is stored per issued ID. Threads take counter values in blocks, so they rarely touch shared state.
+ * Optionally highest bits of the ID contain a shard tag that can be used for routing
  */
 @Service
 public class IdGenerator {
 
-    private static final int MAX_TRY = 32;
+    /**
+     * SeatHoldId is a non-negative int
+     */
+    private static final int ID_BITS = 31;
 
-    private static final Logger log = LoggerFactory.getLogger(IdGenerator.class);
+    private static final int MAX_SHARD_BITS = 8;
+
+    private static final int KEY_LENGTH = 16;
+
+    private static final int BLOCK_SIZE = 64;
 
     private AtomicInteger atomicInteger = new AtomicInteger(1);
 
     @Autowired
     private RandomService randomService;
 
-    private Set<Integer> usedIds = new TreeSet<>();
+    private byte[] key;
+
+    private volatile Scheme scheme;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private final ThreadLocal<long[]> localBlock = ThreadLocal.withInitial(() -> new long[] {0, 0});
+
+    @PostConstruct
+    public void init() {
+        key = new byte[KEY_LENGTH];
+        randomService.nextBytes(key);
+        scheme = new Scheme(key, 0, 0);
+    }
 
     public int nextSeatHoldId() {
-        for (int i = 0; i < MAX_TRY; i++) {
-            int random = randomService.nextInt(Integer.MAX_VALUE);
-            if (!usedIds.contains(random)) {
-                usedIds.add(random);
-                return random;
-            }
+        final Scheme scheme = this.scheme;
+        final long value = nextCounter() & scheme.counterMask;
+        return scheme.shardTag | (int) scheme.permutation.encrypt(value);
+    }
+
+    /**
+     * Fast negative check for seat hold ids received from clients. Inverts the permutation and compares the counter
+     * value with the number of counter values handed out so far. An id that fails the check was never issued by this
+     * generator, an id that passes might still be unknown to the store
+     *
+     * @return false if the ID was definitely not issued
+     */
+    public boolean mightBeIssued(int seatHoldId) {
+        final Scheme scheme = this.scheme;
+        if (seatHoldId < 0 || (seatHoldId & ~scheme.counterMask) != scheme.shardTag) {
+            return false;
         }
-        //Seriously??
-        log.error("Failed to generate random, gave up after {} try");
-        throw new InternalServiceException("Failed to generate next SeatHoldId");
+        final long issued = counter.get();
+        if (issued > scheme.counterMask) {
+            //Counter wrapped, every value was issued
+            return true;
+        }
+        return scheme.permutation.decrypt(seatHoldId & scheme.counterMask) < issued;
     }
 
     public int nextReservationId() {
         return atomicInteger.getAndIncrement();
     }
+
+    /**
+     * @return shard tag of a seat hold ID
+     */
+    public int getShard(int seatHoldId) {
+        final Scheme scheme = this.scheme;
+        return scheme.shardBits == 0 ? 0 : seatHoldId >>> scheme.permutation.getBits();
+    }
+
+    /**
+     * Sets shard tag. Changes ID format, so it must be done before the service starts processing requests
+     *
+     * @param shard shard tag, must fit into shardBits
+     * @param shardBits number of highest ID bits used for the shard tag
+     */
+    public void setShard(int shard, int shardBits) {
+        if (shardBits < 0 || shardBits > MAX_SHARD_BITS) {
+            throw new ServiceNotReadyException("Invalid configuration - shardBits must be between 0 and " + MAX_SHARD_BITS);
+        }
+        if (shard < 0 || shard >= (1 << shardBits)) {
+            throw new ServiceNotReadyException("Invalid configuration - shard does not fit into " + shardBits + " bits");
+        }
+        if (key == null) {
+            throw new ServiceNotReadyException("Id generator is not initialized");
+        }
+        this.scheme = new Scheme(key, shard, shardBits);
+    }
+
+    private long nextCounter() {
+        final long[] block = localBlock.get();
+        if (block[0] == block[1]) {
+            block[0] = counter.getAndAdd(BLOCK_SIZE);
+            block[1] = block[0] + BLOCK_SIZE;
+        }
+        return block[0]++;
+    }
+
+    private static class Scheme {
+        private final FeistelPermutation permutation;
+        private final int shardBits;
+        private final int shardTag;
+        private final long counterMask;
+
+        Scheme(byte[] key, int shard, int shardBits) {
+            this.permutation = new FeistelPermutation(key, ID_BITS - shardBits);
+            this.shardBits = shardBits;
+            this.shardTag = shard << permutation.getBits();
+            this.counterMask = (1L << permutation.getBits()) - 1;
+        }
+    }
 }
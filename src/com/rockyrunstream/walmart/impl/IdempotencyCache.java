@@ -0,0 +1,270 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.Seat;
+import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.ServiceResult;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.rockyrunstream.walmart.ServiceResult.Status.BAD_REQUEST;
+
+/**
+ * Remembers seat holds by client idempotency key, so a retried hold request returns the original hold instead of
+ * locking more seats. Keys are scoped by customer email.
+ *
+ * Concurrent duplicates are coalesced - the first request computes the hold, the others wait for its result. Only
+ * successful holds are remembered, a failed request can be retried with the same key.
+ *
+ * Entries live for ttl, but not longer than the hold they remember, and are forgotten as soon as the hold is
+ * reserved or released, see {@link #forget(int)}. A retry never gets a dead hold back.
+ *
+ * The cache keeps at most maxEntries. Entries are evicted in insertion order, so eviction is O(1) per entry. An entry
+ * that expires before older ones stays in the queue until it reaches the head, lookups skip it
+ */
+@Service
+public class IdempotencyCache {
+
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private static final int NO_SEAT_HOLD = -1;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Entries in insertion order. Might contain entries that are already removed from the map
+     */
+    private final ConcurrentLinkedQueue<Node> order = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Keys of remembered holds by seat hold id
+     */
+    private final ConcurrentHashMap<Integer, String> keysBySeatHoldId = new ConcurrentHashMap<>();
+
+    private volatile long ttl = DEFAULT_TTL;
+
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Returns remembered result for the key or computes it
+     *
+     * @param customerEmail  customer, keys of different customers never match
+     * @param idempotencyKey client request key
+     * @param numSeats       requested seats, a repeated key must come with the same number of seats
+     * @param hold           computes the hold, called only if the key is unknown
+     * @return the hold result, repeated requests get a copy of the original hold
+     */
+    public CompletableFuture<ServiceResult<SeatHold>> getOrHold(String customerEmail, String idempotencyKey, int numSeats,
+                                                                Supplier<CompletableFuture<ServiceResult<SeatHold>>> hold) {
+        final String key = customerEmail + '\u0000' + idempotencyKey;
+        final long now = System.currentTimeMillis();
+
+        //1. Lookup, forget expired entry
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry, now) && remove(key, entry)) {
+            expirations.increment();
+            entry = null;
+        }
+
+        //2. New key, compute
+        if (entry == null) {
+            final Entry created = new Entry(numSeats, now + ttl);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                misses.increment();
+                order.add(new Node(key, created));
+                evict(now);
+                compute(key, created, hold);
+                return created.result;
+            }
+        }
+
+        //3. Repeated key
+        if (entry.numSeats != numSeats) {
+            return CompletableFuture.completedFuture(ServiceResult.failure(BAD_REQUEST, "Idempotency key is used by another request"));
+        }
+        if (entry.result.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+        return entry.result.thenApply(result -> result.isOk() ? ServiceResult.ok(copy(result.getValue())) : result);
+    }
+
+    private void compute(String key, Entry entry, Supplier<CompletableFuture<ServiceResult<SeatHold>>> hold) {
+        CompletableFuture<ServiceResult<SeatHold>> future;
+        try {
+            future = hold.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, e) -> {
+            //Failures are not remembered
+            if (e != null || !result.isOk()) {
+                entries.remove(key, entry);
+            } else {
+                //1. Do not outlive the hold
+                final SeatHold seatHold = result.getValue();
+                entry.expiresAt = Math.min(entry.expiresAt, seatHold.getExpireAt());
+                //2. Index, unless the entry is already gone
+                entry.seatHoldId = seatHold.getId();
+                keysBySeatHoldId.put(seatHold.getId(), key);
+                if (entries.get(key) != entry) {
+                    keysBySeatHoldId.remove(seatHold.getId(), key);
+                }
+            }
+            if (e != null) {
+                entry.result.completeExceptionally(e);
+            } else {
+                entry.result.complete(result);
+            }
+        });
+    }
+
+    private void evict(long now) {
+        Node head;
+        while ((head = order.peek()) != null) {
+            final boolean removed = entries.get(head.key) != head.entry;
+            final boolean expired = isExpired(head.entry, now);
+            if (!removed && !expired && entries.size() <= maxEntries) {
+                return;
+            }
+            final Node node = order.poll();
+            if (node != null && remove(node.key, node.entry)) {
+                if (isExpired(node.entry, now)) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the hold, called when the hold is reserved or released. A retry with the same key creates a new hold
+     */
+    public void forget(int seatHoldId) {
+        final String key = keysBySeatHoldId.remove(seatHoldId);
+        if (key != null) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.seatHoldId == seatHoldId) {
+                entries.remove(key, entry);
+            }
+        }
+    }
+
+    private boolean remove(String key, Entry entry) {
+        if (!entries.remove(key, entry)) {
+            return false;
+        }
+        if (entry.seatHoldId != NO_SEAT_HOLD) {
+            keysBySeatHoldId.remove(entry.seatHoldId, key);
+        }
+        return true;
+    }
+
+    private static boolean isExpired(Entry entry, long now) {
+        return entry.expiresAt <= now;
+    }
+
+    private static SeatHold copy(SeatHold seatHold) {
+        final SeatHold copy = new SeatHold();
+        copy.setId(seatHold.getId());
+        copy.setExpireAt(seatHold.getExpireAt());
+        copy.setSeats(new ArrayList<>(seatHold.getSeats().size()));
+        for (Seat seat : seatHold.getSeats()) {
+            final Seat seatCopy = new Seat();
+            seatCopy.setRow(seat.getRow());
+            seatCopy.setSeat(seat.getSeat());
+            copy.getSeats().add(seatCopy);
+        }
+        return copy;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return repeated requests that waited for the original request to complete
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return entries removed before ttl because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return share of requests answered without computing a hold
+     */
+    public double getHitRate() {
+        final long repeated = hits.sum() + coalesced.sum();
+        final long total = repeated + misses.sum();
+        return total == 0 ? 0 : (double) repeated / total;
+    }
+
+    public void setTtl(long time, TimeUnit unit) {
+        this.ttl = unit.toMillis(time);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    private static class Entry {
+        private final int numSeats;
+        private volatile long expiresAt;
+        private volatile int seatHoldId = NO_SEAT_HOLD;
+        private final CompletableFuture<ServiceResult<SeatHold>> result = new CompletableFuture<>();
+
+        Entry(int numSeats, long expiresAt) {
+            this.numSeats = numSeats;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Node {
+        private final String key;
+        private final Entry entry;
+
+        Node(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
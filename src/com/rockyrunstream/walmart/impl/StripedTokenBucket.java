@@ -0,0 +1,107 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free token buckets keyed by string. Keys are hashed into a fixed number of stripes, keys that share a stripe
+ * share a bucket, so memory does not grow with the number of keys. Keys are case-insensitive.
+ *
+ * A bucket is a single long updated with CAS: the highest 40 bits keep the last refill time, the lowest 24 bits keep
+ * tokens in 1/1000 units. Zero means a bucket nobody used yet, it is full
+ */
+class StripedTokenBucket {
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE = 1_000;
+
+    private final AtomicLongArray buckets;
+    private final int mask;
+    private final long capacity;
+    private final double refillPerMs;
+    private final long origin;
+
+    /**
+     * @param stripes   number of buckets, rounded up to power of 2
+     * @param capacity  max burst, tokens
+     * @param perSecond refill rate, tokens per second
+     * @param origin    time the bucket timestamps are counted from, ms
+     */
+    StripedTokenBucket(int stripes, int capacity, double perSecond, long origin) {
+        if (stripes <= 0 || stripes > 1 << 24) {
+            throw new ServiceNotReadyException("Invalid configuration - stripes must be between 1 and 2^24");
+        }
+        if (capacity <= 0 || capacity * ONE > TOKEN_MASK) {
+            throw new ServiceNotReadyException("Invalid configuration - capacity must be between 1 and " + TOKEN_MASK / ONE);
+        }
+        if (perSecond <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - refill rate must be positive");
+        }
+        final int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.buckets = new AtomicLongArray(Math.max(1, size));
+        this.mask = buckets.length() - 1;
+        this.capacity = capacity * ONE;
+        this.refillPerMs = perSecond * ONE / 1000;
+        this.origin = origin;
+    }
+
+    /**
+     * Takes one token
+     *
+     * @return false if the bucket is empty
+     */
+    boolean tryAcquire(String key, long now) {
+        final int index = index(key);
+        while (true) {
+            final long bucket = buckets.get(index);
+            final long refilled = refill(bucket, now);
+            final long tokens = refilled & TOKEN_MASK;
+            if (tokens < ONE) {
+                return false;
+            }
+            if (buckets.compareAndSet(index, bucket, refilled - ONE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket has at least one token, does not take it
+     */
+    boolean hasToken(String key, long now) {
+        return (refill(buckets.get(index(key)), now) & TOKEN_MASK) >= ONE;
+    }
+
+    /**
+     * @return bucket state at the given time
+     */
+    private long refill(long bucket, long now) {
+        final long time = Math.max(1, now - origin + 1);
+        if (bucket == 0) {
+            return pack(time, capacity);
+        }
+        final long last = bucket >>> TOKEN_BITS;
+        final long tokens = bucket & TOKEN_MASK;
+        final long added = (long) (Math.max(0, time - last) * refillPerMs);
+        if (added == 0) {
+            //Keep refill time, otherwise frequent calls would never accumulate a fraction of a token
+            return bucket;
+        }
+        return pack(time, Math.min(capacity, tokens + added));
+    }
+
+    private static long pack(long time, long tokens) {
+        return time << TOKEN_BITS | tokens;
+    }
+
+    private int index(String key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(key.charAt(i));
+        }
+        hash *= 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
@@ -1,35 +1,48 @@
 package com.rockyrunstream.walmart.impl;
 
-import com.rockyrunstream.walmart.BadRequestException;
-import com.rockyrunstream.walmart.DataExpired;
 import com.rockyrunstream.walmart.InternalServiceException;
-import com.rockyrunstream.walmart.NoSeatsAvailable;
-import com.rockyrunstream.walmart.OptimisticLockException;
 import com.rockyrunstream.walmart.Seat;
 import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.SeatReservation;
+import com.rockyrunstream.walmart.ServiceResult;
 import com.rockyrunstream.walmart.TicketService;
 import com.rockyrunstream.walmart.impl.finder.SeatFinder;
 import com.rockyrunstream.walmart.impl.finder.Segment;
+import com.rockyrunstream.walmart.impl.hold.FixedHoldTimePolicy;
+import com.rockyrunstream.walmart.impl.hold.HoldTimePolicy;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.metrics.RequestTracer;
 import com.rockyrunstream.walmart.impl.model.Reservation;
 import com.rockyrunstream.walmart.impl.model.ReservationSeat;
 import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.impl.store.CommitOutcome;
+import com.rockyrunstream.walmart.impl.store.ReleaseOutcome;
 import com.rockyrunstream.walmart.impl.store.ReservationStore;
 import com.rockyrunstream.walmart.impl.store.SeatMap;
 import com.rockyrunstream.walmart.impl.store.SeatsCounter;
+import com.rockyrunstream.walmart.impl.trace.TraceEvent;
+import com.rockyrunstream.walmart.impl.trace.TraceRecorder;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
+import static com.rockyrunstream.walmart.ServiceResult.Status.*;
 import static com.rockyrunstream.walmart.impl.model.Reservation.State.*;
 
 @Service
@@ -39,60 +52,257 @@ public class TicketServiceImpl implements TicketService {
 
     private static final int MAX_TRY = 10;
 
+    private static final Map<ServiceResult.Status, String> FAILURE_METRICS = failureMetrics();
+
     @Autowired
     private ReservationStore reservationStore;
 
     @Autowired
     private TokenGenerator tokenGenerator;
 
+    @Autowired
+    private ConfirmationHasher confirmationHasher;
+
     @Autowired
     private IdGenerator idGenerator;
 
+    @Autowired
+    private ExpiryWorker expiryWorker;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private CustomerThrottle customerThrottle;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
     @Autowired
     private SeatFinder seatFinder;
 
     @Autowired
     private VenueService venueService;
 
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+
+    private volatile HoldTimePolicy holdTimePolicy = new FixedHoldTimePolicy();
+
     @Override
     public int numSeatsAvailable() {
+        final long start = metrics.start();
+        final long traceStart = traceRecorder.now();
         final Venue venue = venueService.getVenue();
         final SeatsCounter counter = reservationStore.countReserved();
         final int numSeatsAvailable = venue.getCapacity() - counter.getTotal();
         log.debug("numSeatsAvailable {}", numSeatsAvailable);
+        metrics.time("service.numSeatsAvailable", start);
+        traceRecorder.record(TraceEvent.Type.NUM_SEATS_AVAILABLE, traceStart, null, 0, TraceEvent.NO_SEAT_HOLD, OK);
         return numSeatsAvailable;
     }
 
     @Override
     public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        return tryFindAndHoldSeats(numSeats, customerEmail).orThrow();
+    }
+
+    @Override
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey) {
+        return tryFindAndHoldSeats(numSeats, customerEmail, idempotencyKey).orThrow();
+    }
+
+    @Override
+    public ServiceResult<SeatHold> tryFindAndHoldSeats(int numSeats, String customerEmail, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return tryFindAndHoldSeats(numSeats, customerEmail);
+        }
+        log.debug("findAndHoldSeats numSeats {}, customerEmail {}, idempotencyKey {}", numSeats, customerEmail, idempotencyKey);
+
+        //1. Validate request, so the key is scoped by a valid email
+        final ServiceResult<SeatHold> invalid = validateHoldRequest(numSeats, customerEmail);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        //2. Hold or return the original hold. Hold is computed by this thread, concurrent duplicates wait for it
+        final CompletableFuture<ServiceResult<SeatHold>> result = idempotencyCache.getOrHold(customerEmail, idempotencyKey, numSeats,
+                () -> CompletableFuture.completedFuture(tryFindAndHoldSeats(numSeats, customerEmail)));
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ServiceResult<SeatHold> tryFindAndHoldSeats(int numSeats, String customerEmail) {
+        log.debug("findAndHoldSeats numSeats {}, customerEmail {}", numSeats, customerEmail);
+        final long traceStart = traceRecorder.now();
+        final ServiceResult<SeatHold> seatHold = measure("service.findAndHoldSeats", () -> {
+            //1. Validate request
+            final ServiceResult<SeatHold> invalid = checkHoldRequest(numSeats, customerEmail);
+            if (invalid != null) {
+                return invalid;
+            }
+
+            //2. Optimistically try to create a seat hold
+            final ServiceResult<SeatHold> result = holdSeats(numSeats, customerEmail);
+
+            log.debug("findAndHoldSeats result {}", result);
+            return result;
+        });
+        traceRecorder.record(TraceEvent.Type.FIND_AND_HOLD_SEATS, traceStart, customerEmail, numSeats,
+                seatHold.isOk() ? seatHold.getValue().getId() : TraceEvent.NO_SEAT_HOLD, seatHold.getStatus());
+        return seatHold;
+    }
+
+    /**
+     * Async {@link #tryFindAndHoldSeats(int, String)}, records the same metrics and trace events
+     *
+     * @param executor runs the hold after admission
+     */
+    CompletableFuture<ServiceResult<SeatHold>> tryFindAndHoldSeatsAsync(int numSeats, String customerEmail, Executor executor) {
         log.debug("findAndHoldSeats numSeats {}, customerEmail {}", numSeats, customerEmail);
+        final long traceStart = traceRecorder.now();
+        return measureAsync("service.findAndHoldSeats", () -> {
+            //1. Validate request
+            final ServiceResult<SeatHold> invalid = checkHoldRequest(numSeats, customerEmail);
+            if (invalid != null) {
+                return CompletableFuture.completedFuture(invalid);
+            }
+
+            //2. Optimistically try to create a seat hold
+            return holdSeatsAsync(numSeats, customerEmail, executor);
+        }).thenApply(seatHold -> {
+            traceRecorder.record(TraceEvent.Type.FIND_AND_HOLD_SEATS, traceStart, customerEmail, numSeats,
+                    seatHold.isOk() ? seatHold.getValue().getId() : TraceEvent.NO_SEAT_HOLD, seatHold.getStatus());
+            return seatHold;
+        });
+    }
 
-        //1. Validate request
+    /**
+     * @return failure if request is invalid, null otherwise
+     */
+    <T> ServiceResult<T> validateHoldRequest(int numSeats, String customerEmail) {
         if (numSeats <= 0) {
-            throw new BadRequestException("numSeats must be positive");
+            return ServiceResult.failure(BAD_REQUEST, "numSeats must be positive");
         }
 
-        //2. Do not validate email here. The only reliable email validation is to send actual email with confirmation code
+        //Do not validate email here. The only reliable email validation is to send actual email with confirmation code
         if (StringUtils.isBlank(customerEmail)) {
-            throw new BadRequestException("customerEmail required");
+            return ServiceResult.failure(BAD_REQUEST, "customerEmail required");
         }
+        return null;
+    }
 
-        //3. Optimistically try to create a seat hold
-        final SeatHold result = optimisticOperation(() -> doFindAndHoldSeats(numSeats, customerEmail));
+    /**
+     * Validates request and applies per-customer limits
+     *
+     * @return failure if request must be rejected, null otherwise
+     */
+    <T> ServiceResult<T> checkHoldRequest(int numSeats, String customerEmail) {
+        final ServiceResult<T> invalid = validateHoldRequest(numSeats, customerEmail);
+        if (invalid != null) {
+            return invalid;
+        }
+        if (!customerThrottle.tryHold(customerEmail)) {
+            return ServiceResult.failure(THROTTLED, "Too many holds, try later");
+        }
+        return null;
+    }
 
-        log.debug("findAndHoldSeats result {}", result);
-        return result;
+    /**
+     * Creates a seat hold if admission controller lets the request in. Blocks in the waiting room if the service is busy
+     */
+    ServiceResult<SeatHold> holdSeats(int numSeats, String customerEmail) {
+        final long admissionStart = System.nanoTime();
+        return holdSeats(numSeats, customerEmail, admissionController.admit(), admissionStart);
     }
 
-    private SeatHold doFindAndHoldSeats(int numSeats, String customerEmail) {
+    /**
+     * Same as {@link #holdSeats(int, String)}, but no thread waits in the waiting room. The hold runs on the executor
+     * after admission
+     */
+    CompletableFuture<ServiceResult<SeatHold>> holdSeatsAsync(int numSeats, String customerEmail, Executor executor) {
+        final long admissionStart = System.nanoTime();
+        return admissionController.admitAsync().thenCompose(admission -> {
+            final CompletableFuture<ServiceResult<SeatHold>> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        result.complete(holdSeats(numSeats, customerEmail, admission, admissionStart));
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //The hold never runs, free the slot here
+                if (admission.isOk()) {
+                    admission.getValue().close();
+                }
+                result.complete(ServiceResult.failure(SERVICE_BUSY, "Service busy, try later"));
+            }
+            return result;
+        });
+    }
+
+    private ServiceResult<SeatHold> holdSeats(int numSeats, String customerEmail,
+                                              ServiceResult<AdmissionController.Admission> admission, long admissionStart) {
+        final boolean traced = requestTracer.begin("findAndHoldSeats", numSeats, admissionStart);
+        String status = null;
+        try {
+            //1. Shed load before doing any work
+            requestTracer.phase(RequestTracer.Phase.ADMISSION, traced ? admissionStart : 0);
+            if (!admission.isOk()) {
+                status = admission.getStatus().name();
+                return admission.asFailure();
+            }
+
+            //2. Hold
+            try {
+                final ServiceResult<SeatHold> result = optimisticOperation(() -> doFindAndHoldSeats(numSeats, customerEmail));
+                status = result.getStatus().name();
+                return result;
+            } finally {
+                admission.getValue().close();
+            }
+        } catch (RuntimeException e) {
+            status = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            if (traced) {
+                requestTracer.end(status);
+            }
+        }
+    }
+
+    private ServiceResult<SeatHold> doFindAndHoldSeats(int numSeats, String customerEmail) {
 
         //1. Get data
+        long phaseStart = requestTracer.now();
         final SeatMap seats = reservationStore.getSeatMap();
+        requestTracer.phase(RequestTracer.Phase.GET_SEAT_MAP, phaseStart);
+        phaseStart = requestTracer.now();
         final Venue venue = venueService.getVenue();
+        requestTracer.phase(RequestTracer.Phase.GET_VENUE, phaseStart);
 
         //2. Check if seats are available. Note - venue is not initialized yet, so do some simple math
-        if (venue.getCapacity() - seats.getReservedSeats().size() - seats.getPendingSeats().size() < numSeats) {
-            throw new NoSeatsAvailable(numSeats, venue.getAvailable(), venue.getReserved());
+        final int reserved = seats.getReservedSeats().size();
+        final int pending = seats.getPendingSeats().size();
+        final int available = venue.getCapacity() - reserved - pending;
+        if (available < numSeats) {
+            return ServiceResult.failure(NO_SEATS_AVAILABLE, String.format("No seats available, requested %d, available %d, pending %d",
+                    numSeats, available, pending));
         }
 
         //3. Obtain ids. It might fail, so do it early
@@ -100,18 +310,24 @@ public class TicketServiceImpl implements TicketService {
         final int reservationId = idGenerator.nextReservationId();
 
         //4. Update venue rows
+        phaseStart = requestTracer.now();
         venue.updateSeat(seats);
+        requestTracer.phase(RequestTracer.Phase.UPDATE_SEATS, phaseStart);
 
         //5. Find segments
+        phaseStart = requestTracer.now();
         final List<Segment> segments = seatFinder.find(venue, numSeats);
+        requestTracer.phase(RequestTracer.Phase.FIND_SEATS, phaseStart);
 
         //6. Create reservation
+        final HoldTimePolicy policy = holdTimePolicy;
+        final long now = System.currentTimeMillis();
         final Reservation reservation = new Reservation();
         reservation.setId(reservationId);
         reservation.setState(PENDING);
         reservation.setEmail(customerEmail);
         reservation.setSeatHoldId(seatHoldId);
-        reservation.setExpiresAt(System.currentTimeMillis() + venue.getMaxHoldTime());
+        reservation.setExpiresAt(now + policy.getHoldTime(venue, available, now));
         reservation.setSeats(new ArrayList<>());
 
         final Set<ReservationSeat> set = new HashSet<>();
@@ -131,134 +347,343 @@ public class TicketServiceImpl implements TicketService {
         }
 
         //7. Persist. Optimistic Lock means that one of the seats was taken, and the whole procedure needs to be run again
-        reservationStore.createReservation(reservation);
+        phaseStart = requestTracer.now();
+        final ServiceResult<Reservation> created = reservationStore.tryCreateReservation(reservation);
+        requestTracer.phase(RequestTracer.Phase.CREATE_RESERVATION, phaseStart);
+        if (!created.isOk()) {
+            return created.asFailure();
+        }
+        expiryWorker.holdCreated(reservation.getExpiresAt());
+        policy.onHoldCreated(numSeats, now);
 
         //8. Create seat hold
+        return ServiceResult.ok(toSeatHold(reservation));
+    }
+
+    private static SeatHold toSeatHold(Reservation reservation) {
         final SeatHold seatHold = new SeatHold();
         seatHold.setId(reservation.getSeatHoldId());
         seatHold.setExpireAt(reservation.getExpiresAt());
-        seatHold.setSeats(new ArrayList<>());
+        seatHold.setSeats(toSeats(reservation));
+        return seatHold;
+    }
+
+    private static List<Seat> toSeats(Reservation reservation) {
+        final List<Seat> seats = new ArrayList<>(reservation.getSeats().size());
         for (ReservationSeat reservationSeat : reservation.getSeats()) {
             final Seat seat = new Seat();
             seat.setRow(reservationSeat.getRow());
             seat.setSeat(reservationSeat.getSeat());
-            seatHold.getSeats().add(seat);
+            seats.add(seat);
         }
-        return seatHold;
+        return seats;
     }
 
     @Override
     public String reserveSeats(int seatHoldId, String customerEmail) {
+        return tryReserveSeats(seatHoldId, customerEmail).orThrow();
+    }
+
+    @Override
+    public ServiceResult<String> tryReserveSeats(int seatHoldId, String customerEmail) {
         log.debug("reserveSeats seatHoldId {}, customerEmail {}", seatHoldId, customerEmail);
-        //1. Validate request
+        final long traceStart = traceRecorder.now();
+        final ServiceResult<String> result = measure("service.reserveSeats", () -> {
+            //1. Validate request
+            final ServiceResult<String> invalid = checkReserveRequest(seatHoldId, customerEmail);
+            if (invalid != null) {
+                return invalid;
+            }
+
+            //2. Generate token. Slow hash is computed after commit, store a fast commitment for now
+            final char[] confirmationToken = tokenGenerator.generateToken();
+            final String commitment = tokenGenerator.commitment(confirmationToken);
+
+            //3. Persist
+            return commitHold(seatHoldId, customerEmail, confirmationToken, commitment);
+        });
+        traceRecorder.record(TraceEvent.Type.RESERVE_SEATS, traceStart, customerEmail, 0, seatHoldId, result.getStatus());
+        return result;
+    }
+
+    /**
+     * Async {@link #tryReserveSeats(int, String)}, records the same metrics and trace events
+     *
+     * @param hashingExecutor generates the confirmation token and its commitment
+     * @param storeExecutor   commits the hold
+     */
+    CompletableFuture<ServiceResult<String>> tryReserveSeatsAsync(int seatHoldId, String customerEmail,
+                                                                   Executor hashingExecutor, Executor storeExecutor) {
+        log.debug("reserveSeats seatHoldId {}, customerEmail {}", seatHoldId, customerEmail);
+        final long traceStart = traceRecorder.now();
+        return measureAsync("service.reserveSeats", () -> {
+            //1. Validate request
+            final ServiceResult<String> invalid = checkReserveRequest(seatHoldId, customerEmail);
+            if (invalid != null) {
+                return CompletableFuture.completedFuture(invalid);
+            }
+            return CompletableFuture
+                    //2. Generate token and its commitment, slow hash is computed after commit
+                    .supplyAsync(() -> {
+                        final char[] confirmationToken = tokenGenerator.generateToken();
+                        return new PreparedCommit(confirmationToken, tokenGenerator.commitment(confirmationToken));
+                    }, hashingExecutor)
+                    //3. Persist
+                    .thenApplyAsync(commit -> commitHold(seatHoldId, customerEmail, commit.token, commit.commitment), storeExecutor);
+        }).thenApply(result -> {
+            traceRecorder.record(TraceEvent.Type.RESERVE_SEATS, traceStart, customerEmail, 0, seatHoldId, result.getStatus());
+            return result;
+        });
+    }
+
+    /**
+     * @return failure if request is invalid, null otherwise
+     */
+    <T> ServiceResult<T> validateReserveRequest(int seatHoldId, String customerEmail) {
         if (seatHoldId < 0) {
-            throw new BadRequestException("seatHoldId must be positive or zero");
+            return ServiceResult.failure(BAD_REQUEST, "seatHoldId must be positive or zero");
         }
         if (StringUtils.isBlank(customerEmail)) {
-            throw new BadRequestException("customerEmail required");
+            return ServiceResult.failure(BAD_REQUEST, "customerEmail required");
         }
+        return null;
+    }
 
-        //2. Load reservation
-        final Reservation reservation = reservationStore.getReservationBySeatHoldId(seatHoldId)
-                .orElseThrow(() -> new BadRequestException("Seat Hold not found " + seatHoldId));
-        try {
-            //1.Verify
-            if (!StringUtils.equals(customerEmail, reservation.getEmail())) {
-                //Someone is trying to guess reservation ID and email? Do not return hints to attackers
-                throw new BadRequestException("Seat Hold not found " + seatHoldId);
+    /**
+     * Validates request, applies per-customer limits and rejects seat hold ids that were never issued without
+     * touching the store
+     *
+     * @return failure if request must be rejected, null otherwise
+     */
+    <T> ServiceResult<T> checkReserveRequest(int seatHoldId, String customerEmail) {
+        final ServiceResult<T> invalid = validateReserveRequest(seatHoldId, customerEmail);
+        if (invalid != null) {
+            return invalid;
+        }
+        //Lock-free checks only, a throttled guesser must not reach the store lock
+        final boolean mightBeIssued = idGenerator.mightBeIssued(seatHoldId);
+        if (!customerThrottle.isReserveAllowed(customerEmail, () -> mightBeIssued && reservationStore.isHeldBy(seatHoldId, customerEmail))) {
+            return ServiceResult.failure(THROTTLED, "Too many failed attempts, try later");
+        }
+        if (!mightBeIssued) {
+            customerThrottle.reserveFailed(customerEmail);
+            return ServiceResult.failure(BAD_REQUEST, "Seat Hold not found " + seatHoldId);
+        }
+        return null;
+    }
+
+    /**
+     * Completes the reservation with the confirmation code commitment and schedules slow hash computation
+     */
+    ServiceResult<String> commitHold(int seatHoldId, String customerEmail, char[] confirmationToken, String commitment) {
+        //1. Commit
+        final String lookupKey = tokenGenerator.lookupKey(confirmationToken);
+        final long now = System.currentTimeMillis();
+        final CommitOutcome outcome = reservationStore.commitHold(seatHoldId, customerEmail, now, commitment, lookupKey);
+        switch (outcome) {
+            case COMMITTED:
+                holdTimePolicy.onHoldReserved(now);
+                idempotencyCache.forget(seatHoldId);
+                break;
+            case EXPIRED:
+                return ServiceResult.failure(DATA_EXPIRED, "Reservation already expired");
+            default:
+                //Client error or brut force attack. Someone is trying to guess reservation ID and email? Do not return hints to attackers
+                customerThrottle.reserveFailed(customerEmail);
+                return ServiceResult.failure(BAD_REQUEST, "Seat Hold not found " + seatHoldId);
+        }
+        confirmationHasher.submit(seatHoldId, commitment, confirmationToken.clone());
+
+        //2. Convert reservation token into string. Not safe, strings are immutable and stays in the memory, potential token leaks
+        final String tokenString = new String(confirmationToken);
+        //3. Clean up original token
+        Arrays.fill(confirmationToken, '*');
+
+        return ServiceResult.ok(tokenString);
+    }
+
+    @Override
+    public void releaseHold(int seatHoldId, String customerEmail) {
+        tryReleaseHold(seatHoldId, customerEmail).orThrow();
+    }
+
+    @Override
+    public ServiceResult<Void> tryReleaseHold(int seatHoldId, String customerEmail) {
+        log.debug("releaseHold seatHoldId {}, customerEmail {}", seatHoldId, customerEmail);
+        final long traceStart = traceRecorder.now();
+        final ServiceResult<Void> result = measure("service.releaseHold", () -> {
+            //1. Validate request
+            final ServiceResult<Void> invalid = checkReserveRequest(seatHoldId, customerEmail);
+            if (invalid != null) {
+                return invalid;
             }
 
-            //2. Client error or brut force attack
-            if (reservation.getState() != PENDING && reservation.getState() != EXPIRED) {
-                throw new BadRequestException("Seat Hold not found " + seatHoldId);
+            //2. Release
+            final ReleaseOutcome outcome = reservationStore.releaseHold(seatHoldId, customerEmail);
+            switch (outcome) {
+                case RELEASED:
+                case ALREADY_RELEASED:
+                    idempotencyCache.forget(seatHoldId);
+                    return ServiceResult.ok(null);
+                default:
+                    //Do not return hints to attackers
+                    customerThrottle.reserveFailed(customerEmail);
+                    return ServiceResult.failure(BAD_REQUEST, "Seat Hold not found " + seatHoldId);
             }
+        });
+        traceRecorder.record(TraceEvent.Type.RELEASE_HOLD, traceStart, customerEmail, 0, seatHoldId, result.getStatus());
+        return result;
+    }
 
-            //3. Validate reservation is not expired
-            if (reservation.getState() == EXPIRED) {
-                throw new DataExpired("Reservation already expired");
+    @Override
+    public List<SeatHold> getHoldsByCustomer(String customerEmail) {
+        log.debug("getHoldsByCustomer customerEmail {}", customerEmail);
+        return measure("service.getHoldsByCustomer", () -> {
+            if (StringUtils.isBlank(customerEmail)) {
+                return ServiceResult.<List<SeatHold>>failure(BAD_REQUEST, "customerEmail required");
             }
-            long now = System.currentTimeMillis();
-            if (reservation.getExpiresAt() < now) {
-                throw new DataExpired("Reservation already expired");
+            final List<SeatHold> result = new ArrayList<>();
+            for (Reservation reservation : reservationStore.getHoldsByCustomer(customerEmail)) {
+                result.add(toSeatHold(reservation));
             }
+            return ServiceResult.ok(result);
+        }).orThrow();
+    }
 
-            //4. Generate token
-            final char[] confirmationToken = tokenGenerator.generateToken();
-            final String tokenHash = tokenGenerator.hash(confirmationToken);
-            reservation.setConfirmationCode(tokenHash);
-
-            //5. Persists
-            reservation.setState(COMPLETED);
-            reservationStore.updateReservation(reservation);
-
-            //6. Convert reservation token into string. Not safe, strings are immutable and stays in the memory, potential token leaks
-            final String tokenString = new String(confirmationToken);
-            //7. Clean up original token
-            Arrays.fill(confirmationToken, '*');
-
-            return tokenString;
-        } catch (OptimisticLockException e) {
-            //8. Ouch! It either cleanup service or parallel request
-            final Reservation lastCopy = reservationStore.getReservationBySeatHoldId(seatHoldId)
-                    .orElseThrow(() -> new BadRequestException("Seat Hold not found " + seatHoldId));
-            if (lastCopy.getState() == EXPIRED) {
-                throw new DataExpired("Reservation already expired");
-            } else {
-                //Client error - sent multiple request simultaneously?
-                throw new BadRequestException("Invalid state - " + lastCopy.getState());
+    @Override
+    public List<SeatReservation> getReservationsByCustomer(String customerEmail) {
+        log.debug("getReservationsByCustomer customerEmail {}", customerEmail);
+        return measure("service.getReservationsByCustomer", () -> {
+            if (StringUtils.isBlank(customerEmail)) {
+                return ServiceResult.<List<SeatReservation>>failure(BAD_REQUEST, "customerEmail required");
+            }
+            final List<SeatReservation> result = new ArrayList<>();
+            for (Reservation reservation : reservationStore.getReservationsByCustomer(customerEmail)) {
+                final SeatReservation seatReservation = new SeatReservation();
+                seatReservation.setSeatHoldId(reservation.getSeatHoldId());
+                seatReservation.setSeats(toSeats(reservation));
+                result.add(seatReservation);
             }
+            return ServiceResult.ok(result);
+        }).orThrow();
+    }
+
+    @Override
+    public boolean verifyConfirmation(String confirmationCode) {
+        if (StringUtils.isEmpty(confirmationCode)) {
+            return false;
+        }
+        final char[] token = confirmationCode.toCharArray();
+        try {
+            //1. Find by lookup key, O(1)
+            final Optional<Reservation> reservation = reservationStore.getReservationByLookupKey(tokenGenerator.lookupKey(token));
+            if (!reservation.isPresent()) {
+                return false;
+            }
+
+            //2. Verify against the stored commitment or slow hash, one hash
+            return tokenGenerator.verify(token, reservation.get().getConfirmationCode());
+        } finally {
+            Arrays.fill(token, '*');
         }
     }
 
+    public HoldTimePolicy getHoldTimePolicy() {
+        return holdTimePolicy;
+    }
+
     /**
-     * Expired reservations cleanup timer
+     * Replaces hold time policy, fixed venue hold time is used by default
      */
-    @Scheduled(fixedDelay = 1_000)
-    public void cleanup() {
-        log.debug("Reservation cleanup timer");
-        while (true) {
-            final Optional<Reservation> optional = reservationStore.getOldestPending();
-            //1. Check if there is PENDING reservation
-            if (!optional.isPresent()) {
-                log.info("No pending reservations in the queue, pause cleanup process");
-                break;
-            }
-            final Reservation reservation = optional.get();
+    public void setHoldTimePolicy(HoldTimePolicy holdTimePolicy) {
+        this.holdTimePolicy = holdTimePolicy;
+    }
 
-            //2. Double-check it state
-            if (reservation.getState() != PENDING) {
-                log.error("Invalid state - must be pending, reservation ID {}", reservation.getId());
-                break;
+    private <T> ServiceResult<T> optimisticOperation(SafeCallable<ServiceResult<T>> callable) {
+        for (int i = 0; i < MAX_TRY - 1; i++) {
+            final ServiceResult<T> result = callable.call();
+            if (result.getStatus() != OPTIMISTIC_LOCK) {
+                return result;
             }
+            log.debug("Attempt {} failed", i);
+            admissionController.onRetry();
+            metrics.increment("service.retries");
+            requestTracer.retry();
+        }
+        //Give it last try
+        final ServiceResult<T> result = callable.call();
+        if (result.getStatus() == OPTIMISTIC_LOCK) {
+            metrics.increment("service.retriesExhausted");
+        }
+        return result;
+    }
 
-            //3. Check if it is already expired
-            final long now = System.currentTimeMillis();
-            if (now < reservation.getExpiresAt()) {
-                log.info("Last reservation has not expired yet, pause cleanup process");
-                break;
-            }
+    /**
+     * Times the operation and counts its failures by exception type
+     */
+    private <T> ServiceResult<T> measure(String name, SafeCallable<ServiceResult<T>> operation) {
+        final long start = metrics.start();
+        try {
+            final ServiceResult<T> result = operation.call();
+            countFailure(result);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.increment("exception." + e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.time(name, start);
+        }
+    }
 
-            try {
-                //4. Update
-                reservation.setState(EXPIRED);
-                reservationStore.updateReservation(reservation);
-                log.info("Last reservation expired {}", reservation);
-            } catch (OptimisticLockException e) {
-                log.debug("Optimistic update failed {}", reservation);
+    /**
+     * Same as {@link #measure(String, SafeCallable)} for async operations, the time is recorded when the future completes
+     */
+    private <T> CompletableFuture<ServiceResult<T>> measureAsync(String name, Supplier<CompletableFuture<ServiceResult<T>>> operation) {
+        final long start = metrics.start();
+        CompletableFuture<ServiceResult<T>> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((result, e) -> {
+            if (e != null) {
+                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                metrics.increment("exception." + cause.getClass().getSimpleName());
+            } else {
+                countFailure(result);
             }
+            metrics.time(name, start);
+        });
+    }
+
+    private void countFailure(ServiceResult<?> result) {
+        if (!result.isOk()) {
+            metrics.increment(FAILURE_METRICS.get(result.getStatus()));
         }
     }
 
-    private <T> T optimisticOperation(SafeCallable<T> callable) {
-        for (int i = 0; i < MAX_TRY - 1; i++) {
-            try {
-                return callable.call();
-            } catch (OptimisticLockException e) {
-                log.debug("Attempt {} failed", i);
+    /**
+     * @return counter names of failure statuses, named after the exceptions the statuses map to
+     */
+    private static Map<ServiceResult.Status, String> failureMetrics() {
+        final Map<ServiceResult.Status, String> names = new EnumMap<>(ServiceResult.Status.class);
+        for (ServiceResult.Status status : ServiceResult.Status.values()) {
+            if (status != OK) {
+                names.put(status, "exception." + ServiceResult.failure(status, null).toException().getClass().getSimpleName());
             }
         }
-        //Give it last try
-        return callable.call();
+        return names;
     }
-}
 
+    private static class PreparedCommit {
+        private final char[] token;
+        private final String commitment;
+
+        PreparedCommit(char[] token, String commitment) {
+            this.token = token;
+            this.commitment = commitment;
+        }
+    }
+}
@@ -4,61 +4,91 @@ import com.rockyrunstream.walmart.InternalServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
 /**
- * Tocken hashing code inspired by
+ * Token hashing code inspired by
  * @source https://github.com/bitmelt/java-password-hash/blob/master/PasswordHash.java
  */
 @Service
 public class TokenGenerator {
 
-    private static final char[] SYMBOLS;
-
-    private static final int TOKEN_SIZE = 16;
+    static final int TOKEN_SIZE = 16;
 
     private static final int SALT_LENGTH = 256;
 
-    private static final int NUM_ITERATIONS = 256;//10_000
+    static final int SALT_BYTES = SALT_LENGTH / 8;
+
+    private static final int NUM_ITERATIONS = 10_000;
 
     private static final int KEY_LENGTH = 128;//512
 
     private static final String PASSWORD_ALGORITHM = "PBKDF2WithHmacSHA1"; //HmacSHA512
 
-    static {
-        StringBuilder tmp = new StringBuilder();
-        for (char ch = '0'; ch <= '9'; ++ch) {
-            tmp.append(ch);
-        }
-        for (char ch = 'a'; ch <= 'z'; ++ch) {
-            tmp.append(ch);
-        }
-        for (char ch = 'A'; ch <= 'Z'; ++ch) {
-            tmp.append(ch);
-        }
+    private static final String COMMITMENT_ALGORITHM = "SHA-256";
 
-        SYMBOLS = tmp.toString().toCharArray();
-    }
+    private static final String LOOKUP_ALGORITHM = "HmacSHA256";
+
+    private static final int LOOKUP_KEY_BYTES = 16;
 
     @Autowired
     private RandomService randomService;
 
+    @Autowired
+    private TokenPool tokenPool;
+
+    /**
+     * Secret of the lookup keys. Lives only in memory, as the reservations do
+     */
+    private SecretKeySpec lookupSecret;
+
+    @PostConstruct
+    public void init() {
+        final byte[] secret = new byte[SALT_BYTES];
+        randomService.nextBytes(secret);
+        lookupSecret = new SecretKeySpec(secret, LOOKUP_ALGORITHM);
+    }
+
     public char[] generateToken() {
-        char[] token = new char[TOKEN_SIZE];
+        final char[] token = tokenPool.pollToken();
+        return token != null ? token : tokenPool.generateToken();
+    }
 
-        for (int i = 0; i < TOKEN_SIZE; ++i) {
-            token[i] = SYMBOLS[randomService.nextInt(SYMBOLS.length)];
+    /**
+     * Fast salted commitment to the token. Stored with the reservation until the slow hash is computed
+     */
+    public String commitment(char[] token) {
+        byte[] salt = newSalt();
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(COMMITMENT_ALGORITHM);
+            digest.update(salt);
+            final ByteBuffer tokenBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(token));
+            digest.update(tokenBytes);
+            //Do not leave token bytes in the heap
+            Arrays.fill(tokenBytes.array(), (byte) 0);
+
+            Base64.Encoder encoder = Base64.getEncoder();
+            return COMMITMENT_ALGORITHM + ":1:" + encoder.encodeToString(salt) + ":" + encoder.encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalServiceException("Failed to generate confirmation token", e);
         }
-        return token;
     }
 
     public String hash(char[] token)  {
         // Get a random salt.
-        byte[] salt = new byte[SALT_LENGTH / 8];
-        randomService.nextBytes(salt);
+        byte[] salt = newSalt();
 
         // Hash the token
         PBEKeySpec spec = new PBEKeySpec(token, salt, NUM_ITERATIONS, KEY_LENGTH);
@@ -78,4 +108,66 @@ public class TokenGenerator {
         }
 
     }
+
+    /**
+     * Keyed unsalted digest of the token, used to find the reservation by the token. Without the secret the lookup
+     * key can't be used to brute force the token, the salted hash still verifies it
+     */
+    public String lookupKey(char[] token) {
+        try {
+            final Mac mac = Mac.getInstance(LOOKUP_ALGORITHM);
+            mac.init(lookupSecret);
+            final ByteBuffer tokenBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(token));
+            mac.update(tokenBytes);
+            Arrays.fill(tokenBytes.array(), (byte) 0);
+            return Base64.getEncoder().encodeToString(Arrays.copyOf(mac.doFinal(), LOOKUP_KEY_BYTES));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new InternalServiceException("Failed to generate confirmation lookup key", e);
+        }
+    }
+
+    /**
+     * Checks the token against a stored commitment or slow hash. Costs one hash of the stored kind
+     *
+     * @return true if the token matches
+     */
+    public boolean verify(char[] token, String stored) {
+        final String[] parts = stored == null ? new String[0] : stored.split(":");
+        if (parts.length != 4) {
+            return false;
+        }
+        final Base64.Decoder decoder = Base64.getDecoder();
+        final byte[] salt = decoder.decode(parts[2]);
+        final byte[] expected = decoder.decode(parts[3]);
+        try {
+            final byte[] actual;
+            if (COMMITMENT_ALGORITHM.equals(parts[0])) {
+                final MessageDigest digest = MessageDigest.getInstance(COMMITMENT_ALGORITHM);
+                digest.update(salt);
+                final ByteBuffer tokenBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(token));
+                digest.update(tokenBytes);
+                Arrays.fill(tokenBytes.array(), (byte) 0);
+                actual = digest.digest();
+            } else if (PASSWORD_ALGORITHM.equals(parts[0])) {
+                final PBEKeySpec spec = new PBEKeySpec(token, salt, Integer.parseInt(parts[1]), expected.length * 8);
+                actual = SecretKeyFactory.getInstance(PASSWORD_ALGORITHM).generateSecret(spec).getEncoded();
+                spec.clearPassword();
+            } else {
+                return false;
+            }
+            //Constant time comparison
+            return MessageDigest.isEqual(expected, actual);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new InternalServiceException("Failed to verify confirmation token", e);
+        }
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = tokenPool.pollSalt();
+        if (salt == null) {
+            salt = new byte[SALT_BYTES];
+            randomService.nextBytes(salt);
+        }
+        return salt;
+    }
 }
@@ -0,0 +1,242 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pre-generated confirmation tokens and salts. Random data is produced in bulk by a background thread, the
+ * reservation path only pops ready entries from lock-free queues. When the pool drops below the low watermark a
+ * refill is scheduled. An empty pool is not an error - the caller generates data itself
+ */
+@Service
+public class TokenPool {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenPool.class);
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int DEFAULT_LOW_WATERMARK = 1024;
+
+    /**
+     * Number of entries generated with one nextBytes call
+     */
+    private static final int BATCH_SIZE = 256;
+
+    private static final char[] SYMBOLS;
+
+    /**
+     * Biggest multiple of SYMBOLS.length that fits into a byte. Bigger bytes are dropped, otherwise first symbols
+     * would appear more often than others
+     */
+    private static final int SYMBOLS_BOUND;
+
+    static {
+        StringBuilder tmp = new StringBuilder();
+        for (char ch = '0'; ch <= '9'; ++ch) {
+            tmp.append(ch);
+        }
+        for (char ch = 'a'; ch <= 'z'; ++ch) {
+            tmp.append(ch);
+        }
+        for (char ch = 'A'; ch <= 'Z'; ++ch) {
+            tmp.append(ch);
+        }
+
+        SYMBOLS = tmp.toString().toCharArray();
+        SYMBOLS_BOUND = 256 - 256 % SYMBOLS.length;
+    }
+
+    @Autowired
+    private RandomService randomService;
+
+    private int capacity = DEFAULT_CAPACITY;
+
+    private int lowWatermark = DEFAULT_LOW_WATERMARK;
+
+    private final Queue<char[]> tokens = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> salts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tokenCount = new AtomicInteger();
+    private final AtomicInteger saltCount = new AtomicInteger();
+
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+    private ExecutorService refillExecutor;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder tokenMisses = new LongAdder();
+    private final LongAdder saltMisses = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        refillExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("token-pool-%d")
+                .daemon(true)
+                .build());
+        refill();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    /**
+     * @return pre-generated token or null if the pool is empty
+     */
+    public char[] pollToken() {
+        final char[] token = tokens.poll();
+        if (token == null) {
+            tokenMisses.increment();
+            scheduleRefill();
+            return null;
+        }
+        if (tokenCount.decrementAndGet() < lowWatermark) {
+            scheduleRefill();
+        }
+        return token;
+    }
+
+    /**
+     * @return pre-generated salt or null if the pool is empty
+     */
+    public byte[] pollSalt() {
+        final byte[] salt = salts.poll();
+        if (salt == null) {
+            saltMisses.increment();
+            scheduleRefill();
+            return null;
+        }
+        if (saltCount.decrementAndGet() < lowWatermark) {
+            scheduleRefill();
+        }
+        return salt;
+    }
+
+    /**
+     * Generates a token bypassing the pool
+     */
+    public char[] generateToken() {
+        final char[][] result = new char[1][];
+        generateTokens(result, 1);
+        return result[0];
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                refillExecutor.execute(this::refill);
+            } catch (RuntimeException e) {
+                refillScheduled.set(false);
+                log.warn("Failed to schedule token pool refill {}", e.toString());
+            }
+        }
+    }
+
+    private void refill() {
+        try {
+            refills.increment();
+            int missingTokens;
+            while ((missingTokens = capacity - tokenCount.get()) > 0) {
+                final int count = Math.min(missingTokens, BATCH_SIZE);
+                final char[][] batch = new char[count][];
+                generateTokens(batch, count);
+                tokens.addAll(Arrays.asList(batch));
+                tokenCount.addAndGet(count);
+            }
+            int missingSalts;
+            while ((missingSalts = capacity - saltCount.get()) > 0) {
+                final int count = Math.min(missingSalts, BATCH_SIZE);
+                final byte[] random = new byte[count * TokenGenerator.SALT_BYTES];
+                randomService.nextBytes(random);
+                for (int i = 0; i < count; i++) {
+                    salts.add(Arrays.copyOfRange(random, i * TokenGenerator.SALT_BYTES, (i + 1) * TokenGenerator.SALT_BYTES));
+                }
+                Arrays.fill(random, (byte) 0);
+                saltCount.addAndGet(count);
+            }
+        } finally {
+            refillScheduled.set(false);
+        }
+    }
+
+    private void generateTokens(char[][] target, int count) {
+        //Some bytes are rejected, request a bit more than needed
+        final byte[] random = new byte[count * TokenGenerator.TOKEN_SIZE * 9 / 8 + 8];
+        randomService.nextBytes(random);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            final char[] token = new char[TokenGenerator.TOKEN_SIZE];
+            int length = 0;
+            while (length < token.length) {
+                if (position == random.length) {
+                    randomService.nextBytes(random);
+                    position = 0;
+                }
+                final int value = random[position++] & 0xFF;
+                if (value < SYMBOLS_BOUND) {
+                    token[length++] = SYMBOLS[value % SYMBOLS.length];
+                }
+            }
+            target[i] = token;
+        }
+        Arrays.fill(random, (byte) 0);
+    }
+
+    public int getTokenCount() {
+        return tokenCount.get();
+    }
+
+    public int getSaltCount() {
+        return saltCount.get();
+    }
+
+    /**
+     * @return number of times a token was requested from the empty pool
+     */
+    public long getTokenMisses() {
+        return tokenMisses.sum();
+    }
+
+    /**
+     * @return number of times a salt was requested from the empty pool
+     */
+    public long getSaltMisses() {
+        return saltMisses.sum();
+    }
+
+    public long getRefillCount() {
+        return refills.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public void setLowWatermark(int lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+}
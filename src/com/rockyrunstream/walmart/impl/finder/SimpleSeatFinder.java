@@ -2,6 +2,10 @@ package com.rockyrunstream.walmart.impl.finder;
 
 import com.rockyrunstream.walmart.InternalServiceException;
 import com.rockyrunstream.walmart.NoSeatsAvailable;
+import com.rockyrunstream.walmart.impl.jfr.FlightEvents;
+import com.rockyrunstream.walmart.impl.jfr.SeatFinderEvent;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.metrics.RequestTracer;
 import com.rockyrunstream.walmart.impl.model.Venue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,13 +26,38 @@ public class SimpleSeatFinder implements SeatFinder {
     @Autowired
     private SeatValueFunctionFactory seatValueFunctionFactory;
 
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
     @Override
     public List<Segment> find(Venue venue, int numSeats) {
         if (numSeats <= 0) {
             throw new InternalServiceException("numSeats must be positive ");
         }
-        final Context context = createContext(venue, numSeats);
-        return findSeats(numSeats, context);
+        final long start = metrics.start();
+        final SeatFinderEvent event = FlightEvents.AVAILABLE ? new SeatFinderEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        try {
+            final Context context = createContext(venue, numSeats);
+            requestTracer.segmentsScanned(context.getFreeSegments().size());
+            final List<Segment> segments = findSeats(numSeats, context);
+            if (event != null && event.shouldCommit()) {
+                event.venueCapacity = venue.getCapacity();
+                event.numSeats = numSeats;
+                event.freeSegments = context.getFreeSegments().size();
+                //Every split turns one request into two
+                event.splits = segments.size() - 1;
+                event.commit();
+            }
+            return segments;
+        } finally {
+            metrics.time("finder.find", start);
+        }
     }
 
     private Context createContext(Venue venue, int numSeats) {
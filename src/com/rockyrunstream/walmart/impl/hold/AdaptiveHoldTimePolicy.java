@@ -0,0 +1,147 @@
+package com.rockyrunstream.walmart.impl.hold;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scales the configured hold time with the demand.
+ *
+ * The policy tracks how fast seats are being held and how many holds end up reserved, both smoothed over fixed
+ * windows. From the hold rate and the remaining availability it estimates when the venue sells out. If that happens
+ * within a few hold periods seats must turn over faster, so holds get shorter, even shorter when most of them are
+ * abandoned. In quiet periods customers get longer holds. Result is always within [minFactor, maxFactor] of the
+ * configured hold time
+ */
+public class AdaptiveHoldTimePolicy implements HoldTimePolicy {
+
+    /**
+     * Weight of a full window in the moving averages
+     */
+    private static final double SMOOTHING = 0.5;
+
+    /*
+     * Configuration
+     */
+    private long windowMillis = 1_000;
+    private double horizon = 10;
+    private double minFactor = 0.25;
+    private double maxFactor = 2;
+
+    /*
+     * Current window
+     */
+    private final AtomicLong windowStart = new AtomicLong();
+    private final LongAdder heldSeats = new LongAdder();
+    private final LongAdder createdHolds = new LongAdder();
+    private final LongAdder reservedHolds = new LongAdder();
+
+    /*
+     * Smoothed signals, updated once per window
+     */
+    private volatile double seatRate;
+    private volatile double conversion = 1;
+    private volatile long lastHoldTime;
+
+    @Override
+    public long getHoldTime(Venue venue, int available, long now) {
+        //1. Refresh signals
+        roll(now);
+
+        //2. Estimate time left until the venue sells out and compare it with the hold time
+        final long holdTime = venue.getMaxHoldTime();
+        final double rate = seatRate;
+        double factor = maxFactor;
+        if (rate > 0) {
+            final double timeToSellOut = available / rate;
+            factor = timeToSellOut / (horizon * holdTime);
+            if (factor < 1) {
+                //Under pressure abandoned holds only block seats
+                factor *= 0.5 + 0.5 * conversion;
+            }
+        }
+        factor = Math.max(minFactor, Math.min(maxFactor, factor));
+
+        final long result = Math.max(1, Math.round(holdTime * factor));
+        lastHoldTime = result;
+        return result;
+    }
+
+    @Override
+    public void onHoldCreated(int numSeats, long now) {
+        roll(now);
+        heldSeats.add(numSeats);
+        createdHolds.increment();
+    }
+
+    @Override
+    public void onHoldReserved(long now) {
+        roll(now);
+        reservedHolds.increment();
+    }
+
+    /**
+     * Closes the current window if it is over. Only one thread wins the window, others keep counting into the next one
+     */
+    private void roll(long now) {
+        final long start = windowStart.get();
+        if (start == 0) {
+            windowStart.compareAndSet(0, now);
+            return;
+        }
+        final long elapsed = now - start;
+        if (elapsed < windowMillis || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+
+        //Idle windows count as windows without events
+        final double weight = 1 - Math.pow(1 - SMOOTHING, (double) elapsed / windowMillis);
+        final long seats = heldSeats.sumThenReset();
+        final long created = createdHolds.sumThenReset();
+        final long reserved = reservedHolds.sumThenReset();
+
+        seatRate += ((double) seats / elapsed - seatRate) * weight;
+        if (created > 0) {
+            final double windowConversion = Math.min(1, (double) reserved / created);
+            conversion += (windowConversion - conversion) * weight;
+        }
+    }
+
+    /**
+     * @return smoothed hold rate, seats per second
+     */
+    public double getSeatRate() {
+        return seatRate * 1000;
+    }
+
+    /**
+     * @return smoothed share of holds that end up reserved
+     */
+    public double getConversion() {
+        return conversion;
+    }
+
+    public long getLastHoldTime() {
+        return lastHoldTime;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @param horizon holds get shorter when the venue is expected to sell out within that many hold periods
+     */
+    public void setHorizon(double horizon) {
+        this.horizon = horizon;
+    }
+
+    public void setMinFactor(double minFactor) {
+        this.minFactor = minFactor;
+    }
+
+    public void setMaxFactor(double maxFactor) {
+        this.maxFactor = maxFactor;
+    }
+}
@@ -0,0 +1,14 @@
+package com.rockyrunstream.walmart.impl.hold;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+
+/**
+ * Every hold lives for the venue's configured hold time
+ */
+public class FixedHoldTimePolicy implements HoldTimePolicy {
+
+    @Override
+    public long getHoldTime(Venue venue, int available, long now) {
+        return venue.getMaxHoldTime();
+    }
+}
@@ -0,0 +1,24 @@
+package com.rockyrunstream.walmart.impl.hold;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+
+/**
+ * Decides how long a new seat hold lives. Ticket service consults the policy for every hold and reports hold
+ * lifecycle events back, so a policy can react to the live demand
+ */
+public interface HoldTimePolicy {
+
+    /**
+     * @param venue     active venue, {@link Venue#getMaxHoldTime()} is the configured hold time
+     * @param available seats neither held nor reserved, before the new hold
+     * @param now       current time, ms
+     * @return hold time, ms
+     */
+    long getHoldTime(Venue venue, int available, long now);
+
+    default void onHoldCreated(int numSeats, long now) {
+    }
+
+    default void onHoldReserved(long now) {
+    }
+}
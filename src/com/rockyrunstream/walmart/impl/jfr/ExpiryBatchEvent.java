@@ -0,0 +1,25 @@
+package com.rockyrunstream.walmart.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("com.rockyrunstream.walmart.ExpiryBatch")
+@Label("Expiry Batch")
+@Description("Overdue holds expired by the expiry worker")
+@Category("Ticket Service")
+@Threshold("0 ms")
+public class ExpiryBatchEvent extends Event {
+
+    @Label("Expired Holds")
+    public int expired;
+
+    @Label("Max Lag")
+    @Description("Time between the oldest deadline in the batch and its expiration")
+    @Timespan(Timespan.MILLISECONDS)
+    public long maxLag;
+}
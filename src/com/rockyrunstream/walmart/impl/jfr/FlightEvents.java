@@ -0,0 +1,41 @@
+package com.rockyrunstream.walmart.impl.jfr;
+
+import jdk.jfr.Recording;
+
+import java.time.Duration;
+
+/**
+ * Java Flight Recorder events of the service. Events are recorded only by a running recording that enables them, a
+ * disabled event costs an allocation the JIT usually eliminates and one check.
+ *
+ * Events are enabled by the default and profile settings with thresholds from their annotations. Use
+ * {@link #configure(Recording, Duration, Duration, Duration)} to change thresholds of a programmatic recording
+ */
+public final class FlightEvents {
+
+    /**
+     * False on JVMs without jdk.jfr API (JDK 8 before 8u262), event classes must not be touched then
+     */
+    public static final boolean AVAILABLE = isAvailable();
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Enables service events with the given thresholds
+     */
+    public static void configure(Recording recording, Duration finderThreshold, Duration storeThreshold, Duration expiryThreshold) {
+        recording.enable(SeatFinderEvent.class).withThreshold(finderThreshold);
+        recording.enable(StoreTransactionEvent.class).withThreshold(storeThreshold);
+        recording.enable(ExpiryBatchEvent.class).withThreshold(expiryThreshold);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.rockyrunstream.walmart.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("com.rockyrunstream.walmart.SeatFinder")
+@Label("Seat Finder")
+@Description("Seat finder invocation")
+@Category("Ticket Service")
+@Threshold("1 ms")
+public class SeatFinderEvent extends Event {
+
+    @Label("Venue Capacity")
+    public int venueCapacity;
+
+    @Label("Requested Seats")
+    public int numSeats;
+
+    @Label("Free Segments")
+    @Description("Uninterrupted sequences of available seats scanned by the finder")
+    public int freeSegments;
+
+    @Label("Splits")
+    @Description("Times the request was split because no segment could fit it")
+    public int splits;
+}
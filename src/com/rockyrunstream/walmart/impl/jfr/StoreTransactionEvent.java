@@ -0,0 +1,32 @@
+package com.rockyrunstream.walmart.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("com.rockyrunstream.walmart.StoreTransaction")
+@Label("Store Transaction")
+@Description("Reservation store operation, lock wait included")
+@Category("Ticket Service")
+@Threshold("1 ms")
+public class StoreTransactionEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Write")
+    @Description("Operation takes the write lock")
+    public boolean write;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    @Label("Outcome")
+    @Description("Result status, outcome or exception class name")
+    public String outcome;
+}
@@ -0,0 +1,45 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+
+/**
+ * Immutable copy of a latency histogram. Values are reported in microseconds
+ */
+public class LatencySnapshot {
+
+    private static final double NANOS_PER_MICRO = 1_000D;
+
+    private final Histogram histogram;
+
+    LatencySnapshot(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public double getMeanMicros() {
+        return histogram.getMean() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * @param percentile percentile, e.g. 99.9
+     */
+    public double getPercentileMicros(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+    }
+
+    public double getMaxMicros() {
+        return histogram.getMaxValue() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Prints full percentile distribution in HdrHistogram text format, microseconds
+     */
+    public void printDistribution(PrintStream out) {
+        histogram.outputPercentileDistribution(out, NANOS_PER_MICRO);
+    }
+}
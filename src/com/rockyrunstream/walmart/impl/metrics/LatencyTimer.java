@@ -0,0 +1,48 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histogram of one operation, nanoseconds with 3 significant digits.
+ *
+ * Writers record into a {@link Recorder}, it is wait-free and never blocks on readers. Readers swap the recorder
+ * interval histogram and accumulate it into the total
+ */
+public class LatencyTimer {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+
+    private Histogram interval;
+
+    public void record(long nanos) {
+        recorder.recordValue(nanos);
+    }
+
+    /**
+     * Records time since the start
+     *
+     * @param startNanos {@link System#nanoTime()} at the operation start
+     */
+    public void recordSince(long startNanos) {
+        recorder.recordValue(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return copy of all values recorded since creation or the last reset
+     */
+    public synchronized LatencySnapshot snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return new LatencySnapshot(total.copy());
+    }
+
+    public synchronized void reset() {
+        recorder.reset();
+        total.reset();
+    }
+}
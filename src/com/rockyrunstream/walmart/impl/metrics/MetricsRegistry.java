@@ -0,0 +1,158 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import com.rockyrunstream.walmart.InternalServiceException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters of the service. Names are dot separated, prefixed by component:
+ *  - service.* - public TicketService operations
+ *  - store.* - ReservationStore operations, including lock wait
+ *  - finder.* - seat finder
+ *  - exception.* - failures by exception type, expected failures are counted by the exception they map to
+ *
+ * Recording is lock-free. Disabled registry skips the clock reads, so overhead can be measured by comparing runs
+ * with metrics on and off
+ */
+@Service
+public class MetricsRegistry {
+
+    /**
+     * Start time returned when metrics are disabled
+     */
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final ConcurrentHashMap<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * @return operation start time, pass it to {@link #time(String, long)}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Records operation latency
+     *
+     * @param name       timer name
+     * @param startNanos value returned by {@link #start()}
+     */
+    public void time(String name, long startNanos) {
+        if (startNanos != DISABLED) {
+            timer(name).recordSince(startNanos);
+        }
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        if (enabled) {
+            counter(name).add(delta);
+        }
+    }
+
+    public LatencyTimer timer(String name) {
+        //Java 8 computeIfAbsent locks the bin even if the key is present, try plain get first
+        final LatencyTimer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, n -> new LatencyTimer());
+    }
+
+    private LongAdder counter(String name) {
+        final LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return latency histogram copy, null if the operation was never timed
+     */
+    public LatencySnapshot getLatency(String name) {
+        final LatencyTimer timer = timers.get(name);
+        return timer == null ? null : timer.snapshot();
+    }
+
+    public long getCount(String name) {
+        final LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, LatencySnapshot> getLatencies() {
+        final Map<String, LatencySnapshot> result = new TreeMap<>();
+        timers.forEach((name, timer) -> result.put(name, timer.snapshot()));
+        return result;
+    }
+
+    public Map<String, Long> getCounts() {
+        final Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    /**
+     * Forgets recorded values. Values recorded concurrently with the reset might be lost
+     */
+    public void reset() {
+        timers.values().forEach(LatencyTimer::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Prints summary table of timers, in microseconds, and counters
+     */
+    public void report(PrintStream out) {
+        out.printf("%-40s %10s %10s %10s %10s %10s %10s %10s%n", "timer (us)", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        getLatencies().forEach((name, latency) -> {
+            out.printf("%-40s %10d %10.1f", name, latency.getCount(), latency.getMeanMicros());
+            for (double percentile : PERCENTILES) {
+                out.printf(" %10.1f", latency.getPercentileMicros(percentile));
+            }
+            out.printf(" %10.1f%n", latency.getMaxMicros());
+        });
+        out.println();
+        out.printf("%-40s %10s%n", "counter", "count");
+        getCounts().forEach((name, count) -> out.printf("%-40s %10d%n", name, count));
+    }
+
+    /**
+     * Writes the summary followed by full percentile distribution of every timer
+     */
+    public void dump(Path file) {
+        try (OutputStream stream = Files.newOutputStream(file);
+             PrintStream out = new PrintStream(stream, false, StandardCharsets.UTF_8.name())) {
+            report(out);
+            for (String name : new TreeSet<>(timers.keySet())) {
+                out.println();
+                out.println(name);
+                timers.get(name).snapshot().printDistribution(out);
+            }
+        } catch (IOException e) {
+            throw new InternalServiceException("Failed to dump metrics to " + file, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,256 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import com.rockyrunstream.walmart.InternalServiceException;
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-request phase timing. A request is traced by the thread that runs it: phases, retries and scanned segments are
+ * accumulated in a reusable thread local trace, so a fast request costs a few clock reads and allocates nothing.
+ *
+ * Requests slower than the threshold are copied into a ring buffer, the oldest are overwritten. The buffer can be
+ * exported as CSV for offline analysis
+ */
+@Service
+public class RequestTracer {
+
+    public enum Phase {
+        /**
+         * Waiting for the admission controller
+         */
+        ADMISSION,
+        GET_SEAT_MAP,
+        /**
+         * Copy of the venue prototype
+         */
+        GET_VENUE,
+        UPDATE_SEATS,
+        FIND_SEATS,
+        CREATE_RESERVATION
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final long DEFAULT_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final ThreadLocal<Trace> traces = ThreadLocal.withInitial(Trace::new);
+
+    private volatile boolean enabled = true;
+
+    private volatile long thresholdNanos = DEFAULT_THRESHOLD;
+
+    private volatile AtomicReferenceArray<SlowRequest> buffer = new AtomicReferenceArray<>(DEFAULT_CAPACITY);
+
+    private final AtomicLong written = new AtomicLong();
+
+    /*
+     * Metrics
+     */
+    private final LongAdder traced = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    /**
+     * Starts tracing a request on the calling thread. Nested requests are traced as part of the outer one
+     *
+     * @return true if the request is traced and must be finished with {@link #end(String)}
+     */
+    public boolean begin(String operation, int numSeats) {
+        return begin(operation, numSeats, System.nanoTime());
+    }
+
+    /**
+     * Same as {@link #begin(String, int)}, for requests that started on another thread, e.g. waited for admission
+     *
+     * @param startNanos request start, {@link System#nanoTime()}
+     */
+    public boolean begin(String operation, int numSeats, long startNanos) {
+        if (!enabled) {
+            return false;
+        }
+        final Trace trace = traces.get();
+        if (trace.active) {
+            return false;
+        }
+        trace.active = true;
+        trace.operation = operation;
+        trace.numSeats = numSeats;
+        trace.retries = 0;
+        trace.segmentsScanned = 0;
+        Arrays.fill(trace.phaseNanos, 0);
+        trace.startNanos = startNanos;
+        return true;
+    }
+
+    /**
+     * @return phase start time, pass it to {@link #phase(Phase, long)}. Zero if the thread is not tracing a request
+     */
+    public long now() {
+        return traces.get().active ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds time since the phase start to the traced request
+     */
+    public void phase(Phase phase, long startNanos) {
+        if (startNanos != 0) {
+            final Trace trace = traces.get();
+            if (trace.active) {
+                trace.phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+            }
+        }
+    }
+
+    public void retry() {
+        final Trace trace = traces.get();
+        if (trace.active) {
+            trace.retries++;
+        }
+    }
+
+    public void segmentsScanned(int segments) {
+        final Trace trace = traces.get();
+        if (trace.active) {
+            trace.segmentsScanned += segments;
+        }
+    }
+
+    /**
+     * Finishes the request traced by the calling thread, keeps it if it was slow
+     *
+     * @param status result status or exception class name
+     */
+    public void end(String status) {
+        final Trace trace = traces.get();
+        if (!trace.active) {
+            return;
+        }
+        trace.active = false;
+        traced.increment();
+        final long total = System.nanoTime() - trace.startNanos;
+        if (total < thresholdNanos) {
+            return;
+        }
+        slow.increment();
+        final SlowRequest request = new SlowRequest(System.currentTimeMillis(), Thread.currentThread().getName(),
+                trace.operation, status, trace.numSeats, trace.retries, trace.segmentsScanned, total, trace.phaseNanos.clone());
+        final AtomicReferenceArray<SlowRequest> current = buffer;
+        current.set((int) (written.getAndIncrement() % current.length()), request);
+    }
+
+    /**
+     * @return slow requests kept by the ring buffer, oldest first
+     */
+    public List<SlowRequest> getSlowRequests() {
+        final AtomicReferenceArray<SlowRequest> current = buffer;
+        final int capacity = current.length();
+        final long end = written.get();
+        final List<SlowRequest> result = new ArrayList<>();
+        for (long i = Math.max(0, end - capacity); i < end; i++) {
+            final SlowRequest request = current.get((int) (i % capacity));
+            if (request != null) {
+                result.add(request);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes slow requests as CSV, durations in microseconds. The format does not depend on the default locale
+     */
+    public void export(Path file) {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8.name())) {
+            out.print("timestamp,thread,operation,status,numSeats,retries,segmentsScanned,total");
+            for (Phase phase : PHASES) {
+                out.print(',');
+                out.print(phase.name());
+            }
+            out.println();
+            for (SlowRequest request : getSlowRequests()) {
+                out.printf(Locale.ROOT, "%d,%s,%s,%s,%d,%d,%d,%.1f", request.getTimestamp(), quote(request.getThread()),
+                        request.getOperation(), request.getStatus(), request.getNumSeats(), request.getRetries(), request.getSegmentsScanned(),
+                        request.getTotalNanos() / 1_000D);
+                for (Phase phase : PHASES) {
+                    out.printf(Locale.ROOT, ",%.1f", request.getPhaseNanos(phase) / 1_000D);
+                }
+                out.println();
+            }
+        } catch (IOException e) {
+            throw new InternalServiceException("Failed to export slow requests to " + file, e);
+        }
+    }
+
+    /**
+     * Thread names are free text, may contain commas and quotes
+     */
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Forgets kept slow requests
+     */
+    public void clear() {
+        buffer = new AtomicReferenceArray<>(buffer.length());
+        written.set(0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param time requests at least this slow are kept
+     */
+    public void setThreshold(long time, TimeUnit unit) {
+        this.thresholdNanos = unit.toNanos(time);
+    }
+
+    /**
+     * Resizes the ring buffer, kept requests are forgotten
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - capacity must be positive");
+        }
+        buffer = new AtomicReferenceArray<>(capacity);
+        written.set(0);
+    }
+
+    public long getTracedCount() {
+        return traced.sum();
+    }
+
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    private static class Trace {
+        private boolean active;
+        private String operation;
+        private int numSeats;
+        private int retries;
+        private int segmentsScanned;
+        private long startNanos;
+        private final long[] phaseNanos = new long[PHASES.length];
+    }
+}
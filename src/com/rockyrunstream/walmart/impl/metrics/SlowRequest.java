@@ -0,0 +1,95 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Phase breakdown of a request slower than the tracing threshold
+ */
+public class SlowRequest {
+
+    private final long timestamp;
+    private final String thread;
+    private final String operation;
+    private final String status;
+    private final int numSeats;
+    private final int retries;
+    private final int segmentsScanned;
+    private final long totalNanos;
+    private final long[] phaseNanos;
+
+    SlowRequest(long timestamp, String thread, String operation, String status, int numSeats, int retries,
+                int segmentsScanned, long totalNanos, long[] phaseNanos) {
+        this.timestamp = timestamp;
+        this.thread = thread;
+        this.operation = operation;
+        this.status = status;
+        this.numSeats = numSeats;
+        this.retries = retries;
+        this.segmentsScanned = segmentsScanned;
+        this.totalNanos = totalNanos;
+        this.phaseNanos = phaseNanos;
+    }
+
+    /**
+     * @return request completion time, ms
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return result status or exception class name
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return free segments scanned by the seat finder, all attempts
+     */
+    public int getSegmentsScanned() {
+        return segmentsScanned;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return time spent in the phase, all attempts
+     */
+    public long getPhaseNanos(RequestTracer.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "SlowRequest{" +
+                "timestamp=" + timestamp +
+                ", thread='" + thread + '\'' +
+                ", operation='" + operation + '\'' +
+                ", status='" + status + '\'' +
+                ", numSeats=" + numSeats +
+                ", retries=" + retries +
+                ", segmentsScanned=" + segmentsScanned +
+                ", totalNanos=" + totalNanos +
+                ", phaseNanos=" + Arrays.toString(phaseNanos) +
+                '}';
+    }
+}
@@ -9,7 +9,7 @@ import java.util.List;
 public class Reservation {
 
     public enum State {
-        PENDING, EXPIRED, COMPLETED
+        PENDING, EXPIRED, COMPLETED, RELEASED
     }
 
     @PositiveOrZero
@@ -0,0 +1,27 @@
+package com.rockyrunstream.walmart.impl.store;
+
+/**
+ * Result of an attempt to commit a seat hold
+ */
+public enum CommitOutcome {
+    /**
+     * Hold is reserved
+     */
+    COMMITTED,
+    /**
+     * There is no hold with given ID
+     */
+    NOT_FOUND,
+    /**
+     * Hold belongs to another customer
+     */
+    NOT_OWNER,
+    /**
+     * Hold is not pending anymore, i.e. already reserved
+     */
+    INVALID_STATE,
+    /**
+     * Hold expired or released
+     */
+    EXPIRED
+}
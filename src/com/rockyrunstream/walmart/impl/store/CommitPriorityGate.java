@@ -0,0 +1,109 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets commits overtake new holds on the way to the write lock. A hold does not queue for the write lock while a commit
+ * is waiting for it or running, but never waits longer than maxHoldDelay, so a steady stream of commits can't starve
+ * holds.
+ *
+ * Gate is free while there are no commits in flight, holds pass it with a single volatile read
+ */
+class CommitPriorityGate {
+
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger waitingHolds = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition noCommits = lock.newCondition();
+
+    private volatile boolean enabled;
+    private volatile long maxHoldDelayNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /*
+     * Metrics
+     */
+    private final LongAdder delayedHolds = new LongAdder();
+    private final LongAdder timedOutHolds = new LongAdder();
+    private final LongAdder totalHoldDelay = new LongAdder();
+
+    /**
+     * @return true if the commit is registered and must be completed with {@link #commitDone()}
+     */
+    boolean commitArrived() {
+        if (!enabled) {
+            return false;
+        }
+        commits.incrementAndGet();
+        return true;
+    }
+
+    void commitDone() {
+        if (commits.decrementAndGet() == 0 && waitingHolds.get() > 0) {
+            lock.lock();
+            try {
+                noCommits.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Blocks until there are no commits in flight or maxHoldDelay passes
+     */
+    void awaitHoldTurn() {
+        if (commits.get() == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        lock.lock();
+        waitingHolds.incrementAndGet();
+        try {
+            long remaining = maxHoldDelayNanos;
+            while (commits.get() > 0) {
+                if (remaining <= 0) {
+                    timedOutHolds.increment();
+                    break;
+                }
+                remaining = noCommits.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waitingHolds.decrementAndGet();
+            lock.unlock();
+        }
+        delayedHolds.increment();
+        totalHoldDelay.add(System.nanoTime() - start);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void setMaxHoldDelay(long time, TimeUnit unit) {
+        this.maxHoldDelayNanos = unit.toNanos(time);
+    }
+
+    long getDelayedHolds() {
+        return delayedHolds.sum();
+    }
+
+    long getTimedOutHolds() {
+        return timedOutHolds.sum();
+    }
+
+    double getAverageHoldDelayMillis() {
+        final long count = delayedHolds.sum();
+        return count == 0 ? 0 : totalHoldDelay.sum() / (double) count / 1_000_000;
+    }
+}
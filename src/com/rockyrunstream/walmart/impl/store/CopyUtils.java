@@ -13,6 +13,15 @@ public class CopyUtils {
         return copy;
     }
 
+    /**
+     * Copy for customer queries, confirmation code is a secret and is not copied
+     */
+    static Reservation customerCopy(Reservation reservation) {
+        final Reservation copy = safeCopy(reservation);
+        copy.setConfirmationCode(null);
+        return copy;
+    }
+
     static void safeCopy(Reservation target, Reservation source) {
         target.setId(source.getId());
         target.setTransactionId(source.getTransactionId());
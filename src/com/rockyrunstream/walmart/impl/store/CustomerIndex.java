@@ -0,0 +1,77 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Email to reservation ids index. Not thread-safe, guarded by the store lock.
+ *
+ * Every email is stored once - the index hands out a canonical instance, stored reservations share it. Ids are kept
+ * in primitive arrays, a customer without live reservations is removed from the index
+ */
+class CustomerIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, IdList> customers = new HashMap<>();
+
+    /**
+     * @return canonical email instance
+     */
+    String add(String email, int reservationId) {
+        IdList ids = customers.get(email);
+        if (ids == null) {
+            ids = new IdList(email);
+            customers.put(email, ids);
+        }
+        ids.add(reservationId);
+        return ids.email;
+    }
+
+    void remove(String email, int reservationId) {
+        final IdList ids = customers.get(email);
+        if (ids != null && ids.remove(reservationId) && ids.size == 0) {
+            customers.remove(email);
+        }
+    }
+
+    /**
+     * @return copy of customer reservation ids
+     */
+    int[] get(String email) {
+        final IdList ids = customers.get(email);
+        return ids == null ? EMPTY : Arrays.copyOf(ids.ids, ids.size);
+    }
+
+    int getCustomerCount() {
+        return customers.size();
+    }
+
+    private static class IdList {
+        private final String email;
+        private int[] ids = new int[2];
+        private int size;
+
+        IdList(String email) {
+            this.email = email;
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
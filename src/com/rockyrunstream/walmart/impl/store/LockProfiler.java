@@ -0,0 +1,163 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import com.rockyrunstream.walmart.impl.metrics.LatencySnapshot;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store lock contention profile. Wait and hold time histograms are kept by {@link MetricsRegistry}, the profiler adds:
+ *  - lock queue length samples, taken by a random share of lock requests
+ *  - the slowest critical sections, by hold time
+ *
+ * Critical sections faster than the slowest kept ones are rejected with a single volatile read
+ */
+class LockProfiler {
+
+    private static final int QUEUE_SAMPLE_RATE = 64;
+
+    private static final int SLOWEST_SIZE = 10;
+
+    private final LongAdder queueSamples = new LongAdder();
+    private final LongAdder queueLengthSum = new LongAdder();
+    private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Slowest critical sections, sorted by hold time descending
+     */
+    private final CriticalSection[] slowest = new CriticalSection[SLOWEST_SIZE];
+    private int slowestSize;
+    private volatile long slowestThreshold;
+
+    /**
+     * @return true if the calling lock request should sample queue length
+     */
+    boolean shouldSampleQueue() {
+        return ThreadLocalRandom.current().nextInt(QUEUE_SAMPLE_RATE) == 0;
+    }
+
+    void sampleQueue(int queueLength) {
+        queueSamples.increment();
+        queueLengthSum.add(queueLength);
+        maxQueueLength.accumulate(queueLength);
+    }
+
+    void criticalSection(StoreOperation operation, long waitNanos, long holdNanos) {
+        if (holdNanos <= slowestThreshold) {
+            return;
+        }
+        synchronized (slowest) {
+            if (slowestSize == SLOWEST_SIZE) {
+                if (holdNanos <= slowest[SLOWEST_SIZE - 1].holdNanos) {
+                    return;
+                }
+                slowestSize--;
+            }
+            //Insertion sort, the array is tiny
+            int i = slowestSize++;
+            while (i > 0 && slowest[i - 1].holdNanos < holdNanos) {
+                slowest[i] = slowest[i - 1];
+                i--;
+            }
+            slowest[i] = new CriticalSection(operation.name(), waitNanos, holdNanos, System.currentTimeMillis(),
+                    Thread.currentThread().getName());
+            if (slowestSize == SLOWEST_SIZE) {
+                slowestThreshold = slowest[SLOWEST_SIZE - 1].holdNanos;
+            }
+        }
+    }
+
+    /**
+     * @return slowest critical sections, slowest first
+     */
+    List<CriticalSection> getSlowest() {
+        synchronized (slowest) {
+            return new ArrayList<>(Arrays.asList(slowest).subList(0, slowestSize));
+        }
+    }
+
+    double getAverageQueueLength() {
+        final long samples = queueSamples.sum();
+        return samples == 0 ? 0 : queueLengthSum.sum() / (double) samples;
+    }
+
+    long getMaxQueueLength() {
+        return maxQueueLength.get();
+    }
+
+    void reset() {
+        queueSamples.reset();
+        queueLengthSum.reset();
+        maxQueueLength.reset();
+        synchronized (slowest) {
+            Arrays.fill(slowest, null);
+            slowestSize = 0;
+            slowestThreshold = 0;
+        }
+    }
+
+    /**
+     * Prints wait and hold time by operation, busiest operations first, queue length and the slowest critical sections
+     */
+    void report(PrintStream out, MetricsRegistry metrics) {
+        out.printf("%-28s %10s %12s %10s %10s %12s %10s %10s%n", "lock (us)", "count", "wait total", "wait p99", "wait max",
+                "hold total", "hold p99", "hold max");
+        final List<StoreOperation> operations = new ArrayList<>(Arrays.asList(StoreOperation.values()));
+        final LatencySnapshot[] waits = new LatencySnapshot[operations.size()];
+        final LatencySnapshot[] holds = new LatencySnapshot[operations.size()];
+        for (StoreOperation operation : operations) {
+            waits[operation.ordinal()] = metrics.getLatency(operation.lockWaitName);
+            holds[operation.ordinal()] = metrics.getLatency(operation.lockHoldName);
+        }
+        operations.removeIf(operation -> holds[operation.ordinal()] == null);
+        operations.sort(Comparator.comparingDouble((StoreOperation operation) -> total(holds[operation.ordinal()])).reversed());
+        for (StoreOperation operation : operations) {
+            final LatencySnapshot wait = waits[operation.ordinal()];
+            final LatencySnapshot hold = holds[operation.ordinal()];
+            out.printf("%-28s %10d %12.0f %10.1f %10.1f %12.0f %10.1f %10.1f%n", operation.name(), hold.getCount(),
+                    total(wait), wait.getPercentileMicros(99), wait.getMaxMicros(),
+                    total(hold), hold.getPercentileMicros(99), hold.getMaxMicros());
+        }
+        out.printf("Lock queue length, average %.2f, max %d%n", getAverageQueueLength(), getMaxQueueLength());
+        out.println("Slowest critical sections:");
+        for (CriticalSection section : getSlowest()) {
+            out.printf("  %-28s hold %10.1f us, wait %10.1f us, at %d, thread %s%n", section.operation,
+                    section.holdNanos / 1_000D, section.waitNanos / 1_000D, section.timestamp, section.thread);
+        }
+    }
+
+    private static double total(LatencySnapshot snapshot) {
+        return snapshot.getMeanMicros() * snapshot.getCount();
+    }
+
+    static class CriticalSection {
+        private final String operation;
+        private final long waitNanos;
+        private final long holdNanos;
+        private final long timestamp;
+        private final String thread;
+
+        CriticalSection(String operation, long waitNanos, long holdNanos, long timestamp, String thread) {
+            this.operation = operation;
+            this.waitNanos = waitNanos;
+            this.holdNanos = holdNanos;
+            this.timestamp = timestamp;
+            this.thread = thread;
+        }
+
+        String getOperation() {
+            return operation;
+        }
+
+        long getHoldNanos() {
+            return holdNanos;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.rockyrunstream.walmart.impl.store;
+
+/**
+ * Result of an attempt to release a seat hold
+ */
+public enum ReleaseOutcome {
+    /**
+     * Hold is released, seats are available
+     */
+    RELEASED,
+    /**
+     * Hold already expired or released, nothing to do
+     */
+    ALREADY_RELEASED,
+    /**
+     * There is no hold with given ID
+     */
+    NOT_FOUND,
+    /**
+     * Hold belongs to another customer
+     */
+    NOT_OWNER,
+    /**
+     * Hold is reserved and can not be released
+     */
+    INVALID_STATE
+}
@@ -1,19 +1,27 @@
 package com.rockyrunstream.walmart.impl.store;
 
 import com.rockyrunstream.walmart.InternalServiceException;
-import com.rockyrunstream.walmart.OptimisticLockException;
+import com.rockyrunstream.walmart.ServiceResult;
 import com.rockyrunstream.walmart.impl.SafeCallable;
+import com.rockyrunstream.walmart.impl.jfr.FlightEvents;
+import com.rockyrunstream.walmart.impl.jfr.StoreTransactionEvent;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
 import com.rockyrunstream.walmart.impl.model.Reservation;
 import com.rockyrunstream.walmart.impl.model.ReservationSeat;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -21,16 +29,27 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import static com.rockyrunstream.walmart.ServiceResult.Status.OPTIMISTIC_LOCK;
 import static com.rockyrunstream.walmart.impl.model.Reservation.State.*;
 
 /**
  * In-memory storage. All operations are thread-safe. Access controlled with ReadWriteLock.
+ *
+ * Holds are expired lazily - seats of a pending hold past its deadline are reported as available by read operations
+ * and the hold is expired by the next write operation that needs them.
+ *
+ * In commit priority mode reserve commits overtake new holds waiting for the write lock, see {@link CommitPriorityGate}
+ *
+ * Lock wait and hold time of every operation are recorded while metrics are enabled, see {@link LockProfiler}
  */
 @Service
 public class ReservationStore {
@@ -40,13 +59,40 @@ public class ReservationStore {
     @Autowired
     private Validator validator;
 
-    private ReadWriteLock transactionLock;
+    /**
+     * Replaced by the application registry, the default one serves stores created outside of the context
+     */
+    @Autowired
+    private MetricsRegistry metrics = new MetricsRegistry();
+
+    private ReentrantReadWriteLock transactionLock;
+
+    private final LockProfiler lockProfiler = new LockProfiler();
+
+    private ScheduledExecutorService lockReporter;
+
+    private final CommitPriorityGate commitGate = new CommitPriorityGate();
 
     private Map<Integer, Reservation> reservations;
     private Map<Integer, Reservation> reservationsBySeatHoldId;
-    private PriorityQueue<Reservation> pendingReservations;
+    /**
+     * Owner emails of pending holds by seat hold id. Updated under the write lock, read without the lock
+     */
+    private volatile ConcurrentHashMap<Integer, String> holdOwners;
+    /**
+     * Pending reservations ordered by expiration time
+     */
+    private TreeSet<Reservation> pendingReservations;
     private Set<ReservationSeat> pendingSeats;
     private Set<ReservationSeat> reservedSeats;
+    /**
+     * Live (pending and completed) reservations by customer email
+     */
+    private CustomerIndex customerIndex;
+    /**
+     * Completed reservation ids by confirmation lookup key
+     */
+    private Map<String, Integer> reservationsByLookupKey;
     private int transactionId;
 
     public ReservationStore() {
@@ -55,15 +101,25 @@ public class ReservationStore {
     }
 
     /**
-     * @return 2 counts - number of
+     * @return 2 counts - number of reserved and pending seats. Seats of overdue holds are available
      */
     public SeatsCounter countReserved() {
-        return readOperation(() -> new SeatsCounter(reservedSeats.size(), pendingSeats.size()));
+        return readOperation(StoreOperation.COUNT_RESERVED, () -> {
+            final long now = System.currentTimeMillis();
+            int overdueSeats = 0;
+            for (Reservation reservation : pendingReservations) {
+                if (!isOverdue(reservation, now)) {
+                    break;
+                }
+                overdueSeats += reservation.getSeats().size();
+            }
+            return new SeatsCounter(reservedSeats.size(), pendingSeats.size() - overdueSeats);
+        });
     }
 
 
     public Optional<Reservation> getReservationBySeatHoldId(int seatHoldId) {
-        return readOperation(() -> {
+        return readOperation(StoreOperation.GET_BY_SEAT_HOLD_ID, () -> {
             final Reservation reservation = reservationsBySeatHoldId.get(seatHoldId);
             if (reservation == null) {
                 return Optional.empty();
@@ -73,25 +129,104 @@ public class ReservationStore {
         });
     }
 
-    public Optional<Reservation> getOldestPending() {
-        return readOperation(() -> {
-            while (!pendingReservations.isEmpty()) {
-                final Reservation reservation = pendingReservations.peek();
-                if (reservation.getState() == PENDING) {
-                    final Reservation copy = CopyUtils.safeCopy(reservation);
-                    return Optional.of(copy);
-                } else {
-                    //Not pending anymore - remove from the queue
-                    pendingReservations.poll();
+    /**
+     * Lock-free, reads the owner index maintained by write operations
+     *
+     * @return true if the seat hold is pending and belongs to the customer, overdue holds included
+     */
+    public boolean isHeldBy(int seatHoldId, String email) {
+        return email != null && email.equals(holdOwners.get(seatHoldId));
+    }
+
+    /**
+     * @return completed reservation with the confirmation lookup key, see {@link com.rockyrunstream.walmart.impl.TokenGenerator#lookupKey(char[])}
+     */
+    public Optional<Reservation> getReservationByLookupKey(String lookupKey) {
+        return readOperation(StoreOperation.GET_BY_LOOKUP_KEY, () -> {
+            final Integer id = reservationsByLookupKey.get(lookupKey);
+            final Reservation reservation = id == null ? null : reservations.get(id);
+            if (reservation == null || reservation.getState() != COMPLETED) {
+                return Optional.empty();
+            } else {
+                return Optional.of(CopyUtils.safeCopy(reservation));
+            }
+        });
+    }
+
+    /**
+     * @return copies of customer's pending holds without confirmation codes. Overdue holds are not included
+     */
+    public List<Reservation> getHoldsByCustomer(String email) {
+        return readOperation(StoreOperation.GET_HOLDS_BY_CUSTOMER, () -> {
+            final long now = System.currentTimeMillis();
+            final List<Reservation> result = new ArrayList<>();
+            for (int id : customerIndex.get(email)) {
+                final Reservation reservation = reservations.get(id);
+                if (reservation.getState() == PENDING && !isOverdue(reservation, now)) {
+                    result.add(CopyUtils.customerCopy(reservation));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return copies of customer's completed reservations without confirmation codes
+     */
+    public List<Reservation> getReservationsByCustomer(String email) {
+        return readOperation(StoreOperation.GET_RESERVATIONS_BY_CUSTOMER, () -> {
+            final List<Reservation> result = new ArrayList<>();
+            for (int id : customerIndex.get(email)) {
+                final Reservation reservation = reservations.get(id);
+                if (reservation.getState() == COMPLETED) {
+                    result.add(CopyUtils.customerCopy(reservation));
                 }
             }
-            return Optional.empty();
+            return result;
         });
     }
 
+    /**
+     * @return expiration time of the oldest pending hold or Long.MAX_VALUE if there are no pending holds
+     */
+    public long nextExpiration() {
+        return readOperation(StoreOperation.NEXT_EXPIRATION, () -> pendingReservations.isEmpty() ? Long.MAX_VALUE : pendingReservations.first().getExpiresAt());
+    }
+
+    /**
+     * Expires all holds that are overdue at the given time
+     *
+     * @return expiration times of expired holds
+     */
+    public long[] expireDue(long now) {
+        return writeOperation(StoreOperation.EXPIRE_DUE, () -> {
+            int counter = 0;
+            for (Reservation reservation : pendingReservations) {
+                if (!isOverdue(reservation, now)) {
+                    break;
+                }
+                counter++;
+            }
+            final long[] deadlines = new long[counter];
+            for (int i = 0; i < counter; i++) {
+                final Reservation reservation = pendingReservations.first();
+                deadlines[i] = reservation.getExpiresAt();
+                expire(reservation);
+            }
+            return deadlines;
+        });
+    }
 
     public Reservation createReservation(Reservation reservation) {
-        return writeOperation(() -> {
+        return tryCreateReservation(reservation).orThrow();
+    }
+
+    /**
+     * Creates a reservation. Collision with another reservation is reported as OPTIMISTIC_LOCK status
+     */
+    public ServiceResult<Reservation> tryCreateReservation(Reservation reservation) {
+        commitGate.awaitHoldTurn();
+        return writeOperation(StoreOperation.CREATE, () -> {
 
             //1. Check constraints
             verifyDataConstraints(reservation);
@@ -105,25 +240,31 @@ public class ReservationStore {
                 throw new InternalServiceException("Reservation with this id already exists");
             }
 
-            //3. Verify seats availability
+            //3. Overdue holds might still occupy requested seats, expire them now
+            expireOverdue(System.currentTimeMillis());
+
+            //4. Verify seats availability
             for (ReservationSeat seat : reservation.getSeats()) {
                 if (reservedSeats.contains(seat)) {
-                    throw new OptimisticLockException("Seat " + seat.getLabel() + " already reserved");
+                    return ServiceResult.failure(OPTIMISTIC_LOCK, "Seat " + seat.getLabel() + " already reserved");
                 }
                 if (pendingSeats.contains(seat)) {
-                    throw new OptimisticLockException("Seat " + seat.getLabel() + " already on hold");
+                    return ServiceResult.failure(OPTIMISTIC_LOCK, "Seat " + seat.getLabel() + " already on hold");
                 }
             }
 
-            //4. Save reservation
+            //5. Save reservation
             reservation.setTransactionId(transactionId++);
             final Reservation storedReservation = CopyUtils.safeCopy(reservation);
+            storedReservation.setEmail(customerIndex.add(storedReservation.getEmail(), storedReservation.getId()));
             reservations.put(storedReservation.getId(), storedReservation);
             pendingReservations.add(storedReservation);
             reservationsBySeatHoldId.put(storedReservation.getSeatHoldId(), storedReservation);
+            holdOwners.put(storedReservation.getSeatHoldId(), storedReservation.getEmail());
             pendingSeats.addAll(storedReservation.getSeats());
+            metrics.add("store.seatsHeld", storedReservation.getSeats().size());
 
-            return reservation;
+            return ServiceResult.ok(reservation);
         });
     }
 
@@ -137,7 +278,14 @@ public class ReservationStore {
     }
 
     public Reservation updateReservation(Reservation reservation) {
-        return writeOperation(() -> {
+        return tryUpdateReservation(reservation).orThrow();
+    }
+
+    /**
+     * Updates a reservation. Concurrent modification is reported as OPTIMISTIC_LOCK status
+     */
+    public ServiceResult<Reservation> tryUpdateReservation(Reservation reservation) {
+        return writeOperation(StoreOperation.UPDATE, () -> {
 
             //1. Check constraints
             verifyDataConstraints(reservation);
@@ -145,12 +293,12 @@ public class ReservationStore {
             //2. Get stored reservation
             final Reservation storedReservation = reservations.get(reservation.getId());
             if (storedReservation == null) {
-                throw new InternalServiceException("Reservation " + storedReservation.getSeatHoldId() + " not found");
+                throw new InternalServiceException("Reservation " + reservation.getSeatHoldId() + " not found");
             }
 
             //3. Verify not expired
             if (storedReservation.getTransactionId() > reservation.getTransactionId()) {
-                throw new OptimisticLockException("Reservation " + storedReservation.getSeatHoldId() + " already updated");
+                return ServiceResult.failure(OPTIMISTIC_LOCK, "Reservation " + storedReservation.getSeatHoldId() + " already updated");
             }
 
             //4. Update seat indexes
@@ -168,19 +316,160 @@ public class ReservationStore {
             storedReservation.getSeats().forEach(s -> setsCopy.add(CopyUtils.safeCopy(s)));
             reservation.setSeats(setsCopy);
 
-            //6. Save
+            //6. Save. Expiration order and owner might change, so re-index the reservation
+            pendingReservations.remove(storedReservation);
+            customerIndex.remove(storedReservation.getEmail(), storedReservation.getId());
             reservation.setTransactionId(transactionId++);
             CopyUtils.safeCopy(storedReservation, reservation);
+            if (storedReservation.getState() == PENDING) {
+                pendingReservations.add(storedReservation);
+            }
+            if (storedReservation.getState() == PENDING || storedReservation.getState() == COMPLETED) {
+                storedReservation.setEmail(customerIndex.add(storedReservation.getEmail(), storedReservation.getId()));
+            }
+            if (storedReservation.getState() == PENDING) {
+                holdOwners.put(storedReservation.getSeatHoldId(), storedReservation.getEmail());
+            } else {
+                holdOwners.remove(storedReservation.getSeatHoldId());
+            }
+
+            return ServiceResult.ok(reservation);
+        });
+    }
+
+    /**
+     * Reserves held seats. Validates and updates the hold in one critical section, without copying data
+     *
+     * @param seatHoldId seat hold ID
+     * @param email customer email, must match the hold owner
+     * @param now current time, holds that expire before are not committed
+     * @param confirmationCode confirmation code to store with the reservation
+     * @return commit outcome, the store is changed only if the outcome is COMMITTED
+     */
+    public CommitOutcome commitHold(int seatHoldId, String email, long now, String confirmationCode) {
+        return commitHold(seatHoldId, email, now, confirmationCode, null);
+    }
+
+    /**
+     * Same as {@link #commitHold(int, String, long, String)}, also indexes the reservation by confirmation lookup key
+     *
+     * @param lookupKey confirmation lookup key, null if the reservation should not be indexed
+     */
+    public CommitOutcome commitHold(int seatHoldId, String email, long now, String confirmationCode, String lookupKey) {
+        return commitOperation(StoreOperation.COMMIT_HOLD, () -> {
+            //1. Verify
+            final Reservation storedReservation = reservationsBySeatHoldId.get(seatHoldId);
+            if (storedReservation == null) {
+                return CommitOutcome.NOT_FOUND;
+            }
+            if (!StringUtils.equals(email, storedReservation.getEmail())) {
+                return CommitOutcome.NOT_OWNER;
+            }
+            if (storedReservation.getState() == EXPIRED || storedReservation.getState() == RELEASED) {
+                return CommitOutcome.EXPIRED;
+            }
+            if (storedReservation.getState() != PENDING) {
+                return CommitOutcome.INVALID_STATE;
+            }
+            if (isOverdue(storedReservation, now)) {
+                expire(storedReservation);
+                return CommitOutcome.EXPIRED;
+            }
+
+            //2. PENDING -> COMPLETED
+            pendingReservations.remove(storedReservation);
+            pendingSeats.removeAll(storedReservation.getSeats());
+            reservedSeats.addAll(storedReservation.getSeats());
+            holdOwners.remove(seatHoldId);
+            storedReservation.setState(COMPLETED);
+            storedReservation.setConfirmationCode(confirmationCode);
+            storedReservation.setTransactionId(transactionId++);
+            metrics.add("store.seatsReserved", storedReservation.getSeats().size());
+            if (lookupKey != null && reservationsByLookupKey.putIfAbsent(lookupKey, storedReservation.getId()) != null) {
+                //128 bit keys of random tokens, should never happen
+                log.error("Confirmation lookup key collision, seatHoldId {}", seatHoldId);
+            }
+            return CommitOutcome.COMMITTED;
+        });
+    }
+
+    /**
+     * Releases held seats. Seats become available immediately
+     *
+     * @param seatHoldId seat hold ID
+     * @param email customer email, must match the hold owner
+     * @return release outcome, the store is changed only if the outcome is RELEASED
+     */
+    public ReleaseOutcome releaseHold(int seatHoldId, String email) {
+        return writeOperation(StoreOperation.RELEASE_HOLD, () -> {
+            //1. Verify
+            final Reservation storedReservation = reservationsBySeatHoldId.get(seatHoldId);
+            if (storedReservation == null) {
+                return ReleaseOutcome.NOT_FOUND;
+            }
+            if (!StringUtils.equals(email, storedReservation.getEmail())) {
+                return ReleaseOutcome.NOT_OWNER;
+            }
+            if (storedReservation.getState() == EXPIRED || storedReservation.getState() == RELEASED) {
+                return ReleaseOutcome.ALREADY_RELEASED;
+            }
+            if (storedReservation.getState() != PENDING) {
+                return ReleaseOutcome.INVALID_STATE;
+            }
 
-            return reservation;
+            //2. PENDING -> RELEASED
+            pendingReservations.remove(storedReservation);
+            pendingSeats.removeAll(storedReservation.getSeats());
+            customerIndex.remove(storedReservation.getEmail(), storedReservation.getId());
+            holdOwners.remove(seatHoldId);
+            storedReservation.setState(RELEASED);
+            storedReservation.setTransactionId(transactionId++);
+            return ReleaseOutcome.RELEASED;
+        });
+    }
+
+    /**
+     * Replaces confirmation code of a completed reservation, only if it still has the expected value
+     *
+     * @return true if code was replaced
+     */
+    public boolean updateConfirmationCode(int seatHoldId, String expectedCode, String confirmationCode) {
+        return writeOperation(StoreOperation.UPDATE_CONFIRMATION_CODE, () -> {
+            final Reservation storedReservation = reservationsBySeatHoldId.get(seatHoldId);
+            if (storedReservation == null || storedReservation.getState() != COMPLETED) {
+                return false;
+            }
+            if (!StringUtils.equals(expectedCode, storedReservation.getConfirmationCode())) {
+                return false;
+            }
+            storedReservation.setConfirmationCode(confirmationCode);
+            storedReservation.setTransactionId(transactionId++);
+            return true;
         });
     }
 
+    /**
+     * @return pending and reserved seats. Seats of overdue holds are available, so they are not included
+     */
     public SeatMap getSeatMap() {
-        return readOperation(() -> {
+        return readOperation(StoreOperation.GET_SEAT_MAP, () -> {
+            //Seats of overdue holds
+            final long now = System.currentTimeMillis();
+            final Set<ReservationSeat> overdueSeats = new HashSet<>();
+            for (Reservation reservation : pendingReservations) {
+                if (!isOverdue(reservation, now)) {
+                    break;
+                }
+                overdueSeats.addAll(reservation.getSeats());
+            }
+
             //Copy pending
-            final List<ReservationSeat> pending = new ArrayList<>(pendingSeats.size());
-            pendingSeats.forEach(s -> pending.add(CopyUtils.safeCopy(s)));
+            final List<ReservationSeat> pending = new ArrayList<>(pendingSeats.size() - overdueSeats.size());
+            pendingSeats.forEach(s -> {
+                if (!overdueSeats.contains(s)) {
+                    pending.add(CopyUtils.safeCopy(s));
+                }
+            });
 
             //Copy reserved
             final List<ReservationSeat> reserved = new ArrayList<>(reservedSeats.size());
@@ -190,14 +479,63 @@ public class ReservationStore {
         });
     }
 
+    /**
+     * Expires all overdue holds. Must be called under the write lock
+     *
+     * @return number of expired holds
+     */
+    private int expireOverdue(long now) {
+        int counter = 0;
+        while (!pendingReservations.isEmpty() && isOverdue(pendingReservations.first(), now)) {
+            expire(pendingReservations.first());
+            counter++;
+        }
+        return counter;
+    }
+
+    /**
+     * PENDING -> EXPIRED. Must be called under the write lock
+     */
+    private void expire(Reservation storedReservation) {
+        pendingReservations.remove(storedReservation);
+        pendingSeats.removeAll(storedReservation.getSeats());
+        customerIndex.remove(storedReservation.getEmail(), storedReservation.getId());
+        holdOwners.remove(storedReservation.getSeatHoldId());
+        storedReservation.setState(EXPIRED);
+        storedReservation.setTransactionId(transactionId++);
+        metrics.increment("store.expirations");
+        log.debug("Reservation expired {}", storedReservation.getId());
+    }
+
+    private static String describeOutcome(Object outcome) {
+        if (outcome instanceof ServiceResult) {
+            return ((ServiceResult<?>) outcome).getStatus().name();
+        }
+        if (outcome instanceof Enum) {
+            return ((Enum<?>) outcome).name();
+        }
+        if (outcome instanceof Throwable) {
+            return outcome.getClass().getSimpleName();
+        }
+        return "OK";
+    }
+
+    private static boolean isOverdue(Reservation reservation, long now) {
+        return reservation.getExpiresAt() < now;
+    }
+
     public void drop() {
-        writeOperation(() -> {
+        writeOperation(StoreOperation.DROP, () -> {
             this.reservations = new HashMap<>();
             this.reservationsBySeatHoldId = new HashMap<>();
-            this.pendingReservations = new PriorityQueue<>(Comparator.comparingLong(Reservation::getExpiresAt));
+            this.holdOwners = new ConcurrentHashMap<>();
+            this.pendingReservations = new TreeSet<>(Comparator.comparingLong(Reservation::getExpiresAt)
+                    .thenComparingInt(Reservation::getId));
 
             this.pendingSeats = new HashSet<>();
             this.reservedSeats = new HashSet<>();
+            this.customerIndex = new CustomerIndex();
+            this.reservationsByLookupKey = new HashMap<>();
             this.transactionId = 0;
             return Void.TYPE;
         });
@@ -207,7 +545,7 @@ public class ReservationStore {
      * Check for double-booking
      */
     public boolean isConsistent() {
-        return readOperation(() -> {
+        return readOperation(StoreOperation.IS_CONSISTENT, () -> {
             boolean consistent = true;
             final Set<ReservationSeat> allSeats = new HashSet<>();
             for (Map.Entry<Integer, Reservation> entry : reservations.entrySet()) {
@@ -231,20 +569,149 @@ public class ReservationStore {
         });
     }
 
-    private <T> T readOperation(SafeCallable<T> callable) {
-        return lockOperation(callable, transactionLock.readLock());
+    /**
+     * Commits reserve seats and have priority over new holds if commit priority mode is on
+     */
+    public void setCommitPriority(boolean commitPriority) {
+        commitGate.setEnabled(commitPriority);
+    }
+
+    public boolean isCommitPriority() {
+        return commitGate.isEnabled();
     }
 
-    private <T> T writeOperation(SafeCallable<T> callable) {
-        return lockOperation(callable, transactionLock.writeLock());
+    /**
+     * @param time max time a new hold waits for commits in commit priority mode
+     */
+    public void setMaxHoldDelay(long time, TimeUnit unit) {
+        commitGate.setMaxHoldDelay(time, unit);
+    }
+
+    /**
+     * @return number of holds that waited for commits
+     */
+    public long getDelayedHoldCount() {
+        return commitGate.getDelayedHolds();
     }
 
-    private <T> T lockOperation(SafeCallable<T> callable, Lock lock) {
+    /**
+     * @return number of holds that waited for commits longer than max hold delay and proceeded anyway
+     */
+    public long getHoldDelayTimeoutCount() {
+        return commitGate.getTimedOutHolds();
+    }
+
+    public double getAverageHoldDelayMillis() {
+        return commitGate.getAverageHoldDelayMillis();
+    }
+
+    /**
+     * @return average number of threads waiting for the store lock, sampled by lock requests
+     */
+    public double getAverageLockQueueLength() {
+        return lockProfiler.getAverageQueueLength();
+    }
+
+    public long getMaxLockQueueLength() {
+        return lockProfiler.getMaxQueueLength();
+    }
+
+    /**
+     * Prints lock wait and hold time by operation, lock queue length and the slowest critical sections
+     */
+    public void reportLockContention(PrintStream out) {
+        lockProfiler.report(out, metrics);
+    }
+
+    /**
+     * Forgets queue length samples and the slowest critical sections. Wait and hold times are reset with the metrics
+     */
+    public void resetLockProfile() {
+        lockProfiler.reset();
+    }
+
+    /**
+     * Logs lock contention report periodically, replaces the previous schedule
+     */
+    public synchronized void startLockReport(long period, TimeUnit unit) {
+        stopLockReport();
+        lockReporter = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("store-lock-report-%d").daemon(true).build());
+        lockReporter.scheduleAtFixedRate(() -> {
+            final ByteArrayOutputStream report = new ByteArrayOutputStream();
+            reportLockContention(new PrintStream(report, true));
+            log.info("Store lock contention:{}{}", System.lineSeparator(), report);
+        }, period, period, unit);
+    }
+
+    @PreDestroy
+    public synchronized void stopLockReport() {
+        if (lockReporter != null) {
+            lockReporter.shutdownNow();
+            lockReporter = null;
+        }
+    }
+
+    private <T> T readOperation(StoreOperation operation, SafeCallable<T> callable) {
+        return lockOperation(operation, callable, transactionLock.readLock(), false);
+    }
+
+    private <T> T writeOperation(StoreOperation operation, SafeCallable<T> callable) {
+        return lockOperation(operation, callable, transactionLock.writeLock(), true);
+    }
+
+    private <T> T commitOperation(StoreOperation operation, SafeCallable<T> callable) {
+        final boolean prioritized = commitGate.commitArrived();
+        try {
+            return writeOperation(operation, callable);
+        } finally {
+            if (prioritized) {
+                commitGate.commitDone();
+            }
+        }
+    }
+
+    /**
+     * Runs the operation under the lock. Records latency, lock wait and lock hold time, emits flight recorder event
+     */
+    private <T> T lockOperation(StoreOperation operation, SafeCallable<T> callable, Lock lock, boolean write) {
+        final StoreTransactionEvent event = FlightEvents.AVAILABLE ? new StoreTransactionEvent() : null;
+        final boolean profiled = metrics.isEnabled();
+        final boolean recorded = event != null && event.isEnabled();
+        if (profiled && lockProfiler.shouldSampleQueue()) {
+            lockProfiler.sampleQueue(transactionLock.getQueueLength());
+        }
+        if (recorded) {
+            event.begin();
+        }
+        final long start = profiled || recorded ? System.nanoTime() : 0;
         lock.lock();
+        final long acquired = profiled || recorded ? System.nanoTime() : 0;
+        Object outcome = null;
         try {
-            return callable.call();
+            final T result = callable.call();
+            outcome = result;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = e;
+            throw e;
         } finally {
             lock.unlock();
+            //Everything below runs outside the lock and must not count as hold time
+            if (profiled) {
+                final long released = System.nanoTime();
+                metrics.timer(operation.metricName).record(released - start);
+                metrics.timer(operation.lockWaitName).record(acquired - start);
+                metrics.timer(operation.lockHoldName).record(released - acquired);
+                lockProfiler.criticalSection(operation, acquired - start, released - acquired);
+            }
+            if (recorded && event.shouldCommit()) {
+                event.operation = operation.name();
+                event.write = write;
+                event.lockWait = acquired - start;
+                event.outcome = describeOutcome(outcome);
+                event.commit();
+            }
         }
     }
 
@@ -0,0 +1,43 @@
+package com.rockyrunstream.walmart.impl.store;
+
+/**
+ * Store operations, names of their metrics are computed once
+ */
+enum StoreOperation {
+    COUNT_RESERVED("countReserved"),
+    GET_BY_SEAT_HOLD_ID("getReservationBySeatHoldId"),
+    GET_BY_LOOKUP_KEY("getReservationByLookupKey"),
+    GET_HOLDS_BY_CUSTOMER("getHoldsByCustomer"),
+    GET_RESERVATIONS_BY_CUSTOMER("getReservationsByCustomer"),
+    NEXT_EXPIRATION("nextExpiration"),
+    EXPIRE_DUE("expireDue"),
+    CREATE("tryCreateReservation"),
+    UPDATE("tryUpdateReservation"),
+    COMMIT_HOLD("commitHold"),
+    RELEASE_HOLD("releaseHold"),
+    UPDATE_CONFIRMATION_CODE("updateConfirmationCode"),
+    GET_SEAT_MAP("getSeatMap"),
+    DROP("drop"),
+    IS_CONSISTENT("isConsistent");
+
+    /**
+     * Latency, lock wait included
+     */
+    final String metricName;
+
+    /**
+     * Time from lock request to lock acquisition
+     */
+    final String lockWaitName;
+
+    /**
+     * Time the lock is held
+     */
+    final String lockHoldName;
+
+    StoreOperation(String name) {
+        this.metricName = "store." + name;
+        this.lockWaitName = "store.lockWait." + name;
+        this.lockHoldName = "store.lockHold." + name;
+    }
+}
@@ -0,0 +1,88 @@
+package com.rockyrunstream.walmart.impl.trace;
+
+import com.rockyrunstream.walmart.ServiceResult;
+
+/**
+ * One TicketService call. Customers are anonymized, emails are replaced by numbers in order of appearance.
+ *
+ * A hold that is never reserved or released is a walk away, the replay leaves it to expire the same way
+ */
+public class TraceEvent {
+
+    public enum Type {
+        NUM_SEATS_AVAILABLE,
+        FIND_AND_HOLD_SEATS,
+        RESERVE_SEATS,
+        RELEASE_HOLD
+    }
+
+    /**
+     * Seat hold ID of a failed hold
+     */
+    public static final int NO_SEAT_HOLD = -1;
+
+    private final Type type;
+    private final long offsetNanos;
+    private final long durationNanos;
+    private final int customer;
+    private final int numSeats;
+    private final int seatHoldId;
+    private final ServiceResult.Status status;
+
+    /**
+     * @param offsetNanos call start since the recording start
+     * @param numSeats    requested seats, holds only
+     * @param seatHoldId  issued seat hold ID for holds, requested one for reserve and release
+     */
+    public TraceEvent(Type type, long offsetNanos, long durationNanos, int customer, int numSeats, int seatHoldId,
+                      ServiceResult.Status status) {
+        this.type = type;
+        this.offsetNanos = offsetNanos;
+        this.durationNanos = durationNanos;
+        this.customer = customer;
+        this.numSeats = numSeats;
+        this.seatHoldId = seatHoldId;
+        this.status = status;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getCustomer() {
+        return customer;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public int getSeatHoldId() {
+        return seatHoldId;
+    }
+
+    public ServiceResult.Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceEvent{" +
+                "type=" + type +
+                ", offsetNanos=" + offsetNanos +
+                ", durationNanos=" + durationNanos +
+                ", customer=" + customer +
+                ", numSeats=" + numSeats +
+                ", seatHoldId=" + seatHoldId +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.rockyrunstream.walmart.impl.trace;
+
+import com.rockyrunstream.walmart.ServiceResult;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a trace written by {@link TraceWriter}
+ */
+public class TraceReader implements Closeable {
+
+    private static final TraceEvent.Type[] TYPES = TraceEvent.Type.values();
+
+    private static final ServiceResult.Status[] STATUSES = ServiceResult.Status.values();
+
+    private final DataInputStream in;
+
+    private final long startMillis;
+    private final int numRows;
+    private final int numSeats;
+    private final long maxHoldTime;
+
+    private long lastOffsetMicros;
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        if (this.in.readInt() != TraceWriter.MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        final byte version = this.in.readByte();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        this.startMillis = this.in.readLong();
+        this.numRows = this.in.readInt();
+        this.numSeats = this.in.readInt();
+        this.maxHoldTime = this.in.readLong();
+    }
+
+    /**
+     * @return next event, null at the end of the trace
+     */
+    public TraceEvent read() throws IOException {
+        final int type = in.read();
+        if (type < 0) {
+            return null;
+        }
+        if (type >= TYPES.length) {
+            throw new IOException("Unknown event type " + type);
+        }
+        try {
+            final long offsetMicros = lastOffsetMicros + unZigZag(readVarLong());
+            final long durationMicros = readVarLong();
+            final int customer = (int) readVarLong();
+            final int requestedSeats = TYPES[type] == TraceEvent.Type.FIND_AND_HOLD_SEATS ? (int) readVarLong() : 0;
+            final int seatHoldId = (int) (readVarLong() - 1);
+            final int status = in.readUnsignedByte();
+            lastOffsetMicros = offsetMicros;
+            return new TraceEvent(TYPES[type], offsetMicros * 1_000, durationMicros * 1_000, customer, requestedSeats,
+                    seatHoldId, status < STATUSES.length ? STATUSES[status] : null);
+        } catch (EOFException e) {
+            throw new IOException("Truncated trace", e);
+        }
+    }
+
+    /**
+     * @return recording start time, epoch ms
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return venue rows at the recording start
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return seats in the longest row at the recording start
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public long getMaxHoldTime() {
+        return maxHoldTime;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed var-int");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,209 @@
+package com.rockyrunstream.walmart.impl.trace;
+
+import com.rockyrunstream.walmart.InternalServiceException;
+import com.rockyrunstream.walmart.ServiceResult;
+import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records TicketService calls into a binary trace file, see {@link TraceWriter} for the format. Off by default, the
+ * service pays one volatile read per call.
+ *
+ * When recording, calling threads only put an event into a bounded queue, a dedicated thread writes the file. If the
+ * writer falls behind, events are dropped and counted rather than slowing the service down
+ */
+@Service
+public class TraceRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(TraceRecorder.class);
+
+    private static final int QUEUE_SIZE = 64 * 1024;
+
+    @Autowired
+    private VenueService venueService;
+
+    private volatile boolean recording;
+
+    private volatile long startNanos;
+
+    private BlockingQueue<TraceEvent> queue;
+
+    private ConcurrentHashMap<String, Integer> customers;
+
+    private final AtomicInteger nextCustomer = new AtomicInteger();
+
+    private Thread thread;
+
+    /*
+     * Metrics
+     */
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Starts recording into the file, replaces the file if exists
+     */
+    public synchronized void start(Path file) {
+        if (recording) {
+            throw new InternalServiceException("Trace is already being recorded");
+        }
+
+        //1. Header, venue at the start
+        final Venue venue = venueService.getVenue();
+        int numSeats = 0;
+        for (byte[] row : venue.getRows()) {
+            numSeats = Math.max(numSeats, row.length);
+        }
+        final TraceWriter writer;
+        try {
+            writer = new TraceWriter(Files.newOutputStream(file), System.currentTimeMillis(), venue.getRows().length,
+                    numSeats, venue.getMaxHoldTime());
+        } catch (IOException e) {
+            throw new InternalServiceException("Failed to start trace " + file, e);
+        }
+
+        //2. Writer thread, then accept events
+        queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        customers = new ConcurrentHashMap<>();
+        nextCustomer.set(0);
+        recorded.reset();
+        dropped.reset();
+        startNanos = System.nanoTime();
+        recording = true;
+        thread = new Thread(() -> write(writer, queue), "trace-writer");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Recording trace to {}", file);
+    }
+
+    /**
+     * Stops recording, waits for queued events to be written and closes the file
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (!recording) {
+            return;
+        }
+        //Do not interrupt the writer, interrupt closes the file channel. It sees the flag within a poll timeout
+        recording = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        customers = null;
+        log.info("Trace recorded, {} events, {} dropped", recorded.sum(), dropped.sum());
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * @return call start time, pass it to {@link #record}. Zero if not recording
+     */
+    public long now() {
+        return recording ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a finished call
+     *
+     * @param startNanos value returned by {@link #now()}
+     * @param seatHoldId issued seat hold ID for holds, {@link TraceEvent#NO_SEAT_HOLD} if none. Requested one otherwise
+     */
+    public void record(TraceEvent.Type type, long startNanos, String customerEmail, int numSeats, int seatHoldId,
+                       ServiceResult.Status status) {
+        if (startNanos == 0 || !recording) {
+            return;
+        }
+        final long offset = startNanos - this.startNanos;
+        if (offset < 0) {
+            //Call started before the recording
+            return;
+        }
+        final TraceEvent event = new TraceEvent(type, offset, System.nanoTime() - startNanos, customer(customerEmail),
+                numSeats, seatHoldId, status);
+        if (queue.offer(event)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private int customer(String customerEmail) {
+        if (customerEmail == null) {
+            return 0;
+        }
+        final ConcurrentHashMap<String, Integer> current = customers;
+        if (current == null) {
+            return 0;
+        }
+        final Integer customer = current.get(customerEmail);
+        if (customer != null) {
+            return customer;
+        }
+        return current.computeIfAbsent(customerEmail, k -> nextCustomer.incrementAndGet());
+    }
+
+    private void write(TraceWriter writer, BlockingQueue<TraceEvent> queue) {
+        try {
+            //1. Write until stopped, flush when idle
+            while (recording) {
+                TraceEvent event = queue.poll();
+                if (event == null) {
+                    writer.flush();
+                    try {
+                        event = queue.poll(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (event == null) {
+                        continue;
+                    }
+                }
+                writer.write(event);
+            }
+
+            //2. Drain
+            TraceEvent event;
+            while ((event = queue.poll()) != null) {
+                writer.write(event);
+            }
+        } catch (IOException e) {
+            recording = false;
+            log.error("Failed to write trace, recording stopped", e);
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.error("Failed to close trace", e);
+            }
+        }
+    }
+}
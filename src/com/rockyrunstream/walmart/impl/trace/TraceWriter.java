@@ -0,0 +1,75 @@
+package com.rockyrunstream.walmart.impl.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a binary trace. Layout, big endian:
+ *
+ * Header: int magic "TSTR", byte version, long start time (epoch ms), int venue rows, int seats per row, long max
+ * hold time (ms)
+ *
+ * Event: byte type, then var-ints - start offset delta from the previous event in microseconds (zig-zag, events are
+ * written roughly in start order), duration in microseconds, customer, requested seats (holds only), seat hold ID + 1,
+ * then byte status ordinal. Typical event takes about 12 bytes
+ */
+public class TraceWriter implements Closeable {
+
+    static final int MAGIC = 0x54535452;
+
+    static final byte VERSION = 1;
+
+    static final int NO_STATUS = 0xFF;
+
+    private final DataOutputStream out;
+
+    private long lastOffsetMicros;
+
+    public TraceWriter(OutputStream out, long startMillis, int numRows, int numSeats, long maxHoldTime) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeLong(startMillis);
+        this.out.writeInt(numRows);
+        this.out.writeInt(numSeats);
+        this.out.writeLong(maxHoldTime);
+    }
+
+    public void write(TraceEvent event) throws IOException {
+        final long offsetMicros = event.getOffsetNanos() / 1_000;
+        out.writeByte(event.getType().ordinal());
+        writeVarLong(zigZag(offsetMicros - lastOffsetMicros));
+        writeVarLong(event.getDurationNanos() / 1_000);
+        writeVarLong(event.getCustomer());
+        if (event.getType() == TraceEvent.Type.FIND_AND_HOLD_SEATS) {
+            writeVarLong(event.getNumSeats());
+        }
+        writeVarLong(event.getSeatHoldId() + 1L);
+        out.writeByte(event.getStatus() == null ? NO_STATUS : event.getStatus().ordinal());
+        lastOffsetMicros = offsetMicros;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,145 @@
+package com.rockyrunstream.walmart;
+
+import com.rockyrunstream.walmart.impl.AdmissionController;
+import com.rockyrunstream.walmart.impl.AsyncTicketServiceImpl;
+import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.metrics.LatencySnapshot;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TicketServiceTestConfiguration.class)
+public class AsyncTicketServiceTest {
+
+    @Autowired
+    private AsyncTicketService asyncTicketService;
+
+    @Autowired
+    private VenueService venueService;
+
+    @Autowired
+    private ReservationStore store;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private AsyncTicketServiceImpl asyncTicketServiceImpl;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Before
+    public void setup() {
+        final Venue venue = VenueGenerator.generate(10, 20);
+        venue.setMaxHoldTime(1000);
+        venueService.setVenue(venue);
+        store.drop();
+    }
+
+    @After
+    public void after() {
+        if (!store.isConsistent()) {
+            throw new RuntimeException("Store double booked");
+        }
+    }
+
+    @Test
+    public void smoke() throws Exception {
+        final String token = asyncTicketService.findAndHoldSeats(3, "12")
+                .thenCompose(seatHold -> asyncTicketService.reserveSeats(seatHold.getId(), "12"))
+                .get();
+        Assert.assertNotNull(token);
+        Assert.assertEquals(197, asyncTicketService.numSeatsAvailable().get().intValue());
+    }
+
+    @Test
+    public void concurrentHolds() throws Exception {
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final String email = "customer" + i;
+            futures.add(asyncTicketService.findAndHoldSeats(5, email)
+                    .thenCompose(seatHold -> asyncTicketService.reserveSeats(seatHold.getId(), email)));
+        }
+        for (CompletableFuture<String> future : futures) {
+            Assert.assertNotNull(future.get());
+        }
+        Assert.assertEquals(100, asyncTicketService.numSeatsAvailable().get().intValue());
+    }
+
+    @Test
+    public void invalidEmail() throws Exception {
+        final SeatHold seatHold = asyncTicketService.findAndHoldSeats(1, "12").get();
+        try {
+            asyncTicketService.reserveSeats(seatHold.getId(), "1332").get();
+            Assert.fail("Reservation must fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof BadRequestException);
+        }
+    }
+
+    @Test
+    public void instrumented() throws Exception {
+        final long holds = count("service.findAndHoldSeats");
+        final long reserves = count("service.reserveSeats");
+        final long badRequests = metrics.getCount("exception.BadRequestException");
+
+        final SeatHold seatHold = asyncTicketService.findAndHoldSeats(2, "12").get();
+        asyncTicketService.reserveSeats(seatHold.getId(), "12").get();
+        Assert.assertTrue(asyncTicketService.findAndHoldSeats(0, "12").isCompletedExceptionally());
+
+        Assert.assertEquals(holds + 2, count("service.findAndHoldSeats"));
+        Assert.assertEquals(reserves + 1, count("service.reserveSeats"));
+        Assert.assertEquals(badRequests + 1, metrics.getCount("exception.BadRequestException"));
+    }
+
+    @Test
+    public void rejectedHoldFreesAdmission() throws Exception {
+        final int inFlight = admissionController.getInFlight();
+        final Executor finderExecutor = asyncTicketServiceImpl.getFinderExecutor();
+        asyncTicketServiceImpl.setFinderExecutor(task -> {
+            throw new RejectedExecutionException("Finder pool is shut down");
+        });
+        try {
+            for (int i = 0; i < admissionController.getLimit() + 5; i++) {
+                try {
+                    asyncTicketService.findAndHoldSeats(1, "12").get(5, TimeUnit.SECONDS);
+                    Assert.fail("Hold must be rejected");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof ServiceBusy);
+                }
+            }
+        } finally {
+            asyncTicketServiceImpl.setFinderExecutor(finderExecutor);
+        }
+        Assert.assertEquals(inFlight, admissionController.getInFlight());
+        Assert.assertEquals(0, admissionController.getQueueLength());
+    }
+
+    @Test
+    public void invalidNumSeats() {
+        Assert.assertTrue(asyncTicketService.findAndHoldSeats(0, "12").isCompletedExceptionally());
+    }
+
+    private long count(String timer) {
+        final LatencySnapshot latency = metrics.getLatency(timer);
+        return latency == null ? 0 : latency.getCount();
+    }
+}
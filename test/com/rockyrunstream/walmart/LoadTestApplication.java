@@ -0,0 +1,87 @@
+package com.rockyrunstream.walmart;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.impl.trace.TraceRecorder;
+import com.rockyrunstream.walmart.load.LoadGenerator;
+import com.rockyrunstream.walmart.load.LoadProfile;
+import com.rockyrunstream.walmart.load.LoadResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop load test. Unlike PerformanceTestApplication, customers arrive at a fixed rate regardless of how fast they
+ * are served, so the latency percentiles show what customers wait under the load. Calls are recorded into a trace
+ * per scenario, ReplayApplication replays them
+ */
+public class LoadTestApplication extends AbstractApplication {
+
+    //Venue parameters
+    private static final int NUM_ROWS = 1_000;
+    private static final int NUM_SEATS = 200;
+    private static final long HOLD_TIME = TimeUnit.SECONDS.toMillis(10);
+
+    //Steady load, customers per second
+    private static final double STEADY_RATE = 200;
+    private static final long STEADY_DURATION = 20;
+
+    //Sale opening: the rush decays to the base rate
+    private static final double PEAK_RATE = 1_000;
+    private static final double BASE_RATE = 100;
+    private static final long PEAK_DURATION = 5;
+    private static final long DECAY_DURATION = 10;
+    private static final long ON_SALE_DURATION = 30;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+
+    public static void main(String[] args) {
+        SpringApplication.run(LoadTestApplication.class, args);
+    }
+
+    @Override
+    protected void execute(String[] args) throws Exception {
+        run("Test steady load", "steady", LoadProfile.constant(STEADY_RATE, STEADY_DURATION, TimeUnit.SECONDS));
+        run("Test sale opening", "on-sale", LoadProfile.onSale(PEAK_RATE, BASE_RATE, PEAK_DURATION, DECAY_DURATION,
+                ON_SALE_DURATION, TimeUnit.SECONDS));
+    }
+
+    private void run(String header, String name, LoadProfile profile) throws IOException {
+        printHeader(header);
+
+        //1. Empty venue
+        final Venue venue = VenueGenerator.generate(NUM_ROWS, NUM_SEATS);
+        venue.setMaxHoldTime(HOLD_TIME);
+        venueService.setVenue(venue);
+        store.drop();
+
+        //2. Run, record calls
+        final Path trace = Paths.get("build", "load-" + name + ".trace");
+        Files.createDirectories(trace.getParent());
+        traceRecorder.start(trace);
+        final LoadResult result;
+        try {
+            result = new LoadGenerator(ticketService).run(profile);
+        } finally {
+            traceRecorder.stop();
+        }
+        if (!store.isConsistent()) {
+            throw new RuntimeException("Store contains double-booked seats");
+        }
+
+        //3. Print, full histograms go to a file
+        printf("%n%n    Results: %n");
+        printf(" Venue size: %dx%d %n", NUM_ROWS, NUM_SEATS);
+        result.print(System.out);
+        final Path file = Paths.get("build", "load-" + name + ".txt");
+        result.getMetrics().dump(file);
+        printf("%n Histograms written to %s %n", file.toAbsolutePath());
+        printf(" Trace of %d calls, %d dropped, written to %s %n", traceRecorder.getRecordedCount(),
+                traceRecorder.getDroppedCount(), trace.toAbsolutePath());
+    }
+}
@@ -1,6 +1,13 @@
 package com.rockyrunstream.walmart;
 
+import com.rockyrunstream.walmart.impl.CustomerThrottle;
+import com.rockyrunstream.walmart.impl.TicketServiceImpl;
 import com.rockyrunstream.walmart.impl.finder.SimpleSeatFinder;
+import com.rockyrunstream.walmart.impl.hold.AdaptiveHoldTimePolicy;
+import com.rockyrunstream.walmart.impl.hold.FixedHoldTimePolicy;
+import com.rockyrunstream.walmart.impl.hold.HoldTimePolicy;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.metrics.RequestTracer;
 import com.rockyrunstream.walmart.impl.model.Venue;
 import com.rockyrunstream.walmart.impl.store.SeatsCounter;
 import org.apache.commons.lang3.mutable.MutableInt;
@@ -9,7 +16,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -29,11 +41,35 @@ public class PerformanceTestApplication extends AbstractApplication {
     //For multi-thread test
     private static final int NUM_THREADS = 4;
 
+    //For hold time policy test. Smaller venue, so the test runs several times in reasonable time
+    private static final int POLICY_NUM_ROWS = 200;
+    private static final int POLICY_NUM_SEATS = 100;
+    //Share of holds customers walk away from
+    private static final double ABANDON_RATE = 0.2;
+    //Measured runs of each policy, odd so there is a median
+    private static final int POLICY_ROUNDS = 3;
+
+    //For commit priority test. Hold time is short and the store is busy with holds, so some holds expire before commit
+    private static final int PRIORITY_NUM_THREADS = 8;
+    private static final long PRIORITY_HOLD_TIME = 20;
+
     private static final Logger log = LoggerFactory.getLogger(PerformanceTestApplication.class);
 
     @Autowired
     private SimpleSeatFinder finder;
 
+    @Autowired
+    private TicketServiceImpl ticketServiceImpl;
+
+    @Autowired
+    private CustomerThrottle customerThrottle;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
 
     public static void main(String[] args) {
         SpringApplication.run(PerformanceTestApplication.class, args);
@@ -41,13 +77,22 @@ public class PerformanceTestApplication extends AbstractApplication {
 
     @Override
     protected void execute(String[] args) throws Exception {
+        //Every worker is a crowd of customers sharing one email
+        customerThrottle.setEnabled(false);
         testSeatsFinder();
         testSingleThread();
         testMultipleThreads();
+        testHoldTimePolicies();
+        testCommitPriority();
+        testMetricsOverhead();
     }
 
     private void setup(long maxHoldTime) {
-        final Venue venue = VenueGenerator.generate(NUM_ROWS, NUM_SEATS);
+        setup(NUM_ROWS, NUM_SEATS, maxHoldTime);
+    }
+
+    private void setup(int numRows, int numSeats, long maxHoldTime) {
+        final Venue venue = VenueGenerator.generate(numRows, numSeats);
         venue.setMaxHoldTime(maxHoldTime);
         venueService.setVenue(venue);
         store.drop();
@@ -55,7 +100,7 @@ public class PerformanceTestApplication extends AbstractApplication {
 
 
     /**
-     * Test how fast is seat selector algorithm
+     * Test how fast is seat selector algorithm. Rough numbers, see SeatFinderBenchmark for controlled measurement
      */
     private void testSeatsFinder() {
         printHeader("Test seats finder's performance");
@@ -105,7 +150,7 @@ public class PerformanceTestApplication extends AbstractApplication {
         setup(holdPeriod);
 
         //2. Execute test
-        final Worker worker = new Worker("testSingleThread");
+        final Worker worker = new Worker("testSingleThread", 0);
         worker.run();
 
         //3. Check for errors
@@ -129,7 +174,7 @@ public class PerformanceTestApplication extends AbstractApplication {
 
     private void checkConsistency() {
         //Debug output, only for small venues
-        if (NUM_ROWS * NUM_SEATS < 10_000) {
+        if (venueService.getVenue().getCapacity() < 10_000) {
             printVenue();
         }
         if (!store.isConsistent()) {
@@ -137,30 +182,176 @@ public class PerformanceTestApplication extends AbstractApplication {
         }
     }
 
+    private void testMultipleThreads() throws IOException {
+        printHeader("Test multi-thread performance");
+        metrics.reset();
+        store.resetLockProfile();
+        requestTracer.clear();
+        testMultipleThreads(NUM_ROWS, NUM_SEATS, NUM_THREADS, 100, 0);
+
+        printf("%n%n    Store lock contention: %n");
+        store.reportLockContention(System.out);
+
+        final Path file = Paths.get("build", "slow-requests.csv");
+        Files.createDirectories(file.getParent());
+        requestTracer.export(file);
+        printf("%n Slow requests %d of %d, last %d exported to %s %n", requestTracer.getSlowCount(), requestTracer.getTracedCount(),
+                requestTracer.getSlowRequests().size(), file.toAbsolutePath());
+    }
+
+    /**
+     * Customers abandon some holds, these seats are sold after the hold expires. Compare how fast the venue is sold
+     * with fixed and adaptive hold time. The first run warms up the JVM and is discarded, then policies alternate
+     * which one goes first, the median run of each policy counts
+     */
+    private void testHoldTimePolicies() {
+        //1. Warm up
+        printHeader("Warm up hold time policies");
+        testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, NUM_THREADS, 100, ABANDON_RATE);
+
+        //2. Measure
+        final long[] fixed = new long[POLICY_ROUNDS];
+        final long[] adaptiveRates = new long[POLICY_ROUNDS];
+        AdaptiveHoldTimePolicy adaptive = null;
+        for (int round = 0; round < POLICY_ROUNDS; round++) {
+            final boolean adaptiveFirst = round % 2 == 1;
+            for (int i = 0; i < 2; i++) {
+                if (adaptiveFirst == (i == 0)) {
+                    printHeader("Test adaptive hold time, round " + (round + 1));
+                    adaptive = new AdaptiveHoldTimePolicy();
+                    adaptiveRates[round] = testHoldTimePolicy(adaptive);
+                } else {
+                    printHeader("Test fixed hold time, round " + (round + 1));
+                    fixed[round] = testHoldTimePolicy(new FixedHoldTimePolicy());
+                }
+            }
+        }
+        Arrays.sort(fixed);
+        Arrays.sort(adaptiveRates);
+
+        printf("%n%n    Hold time policies: %n");
+        printf(" Abandoned holds, %d%% %n", Math.round(ABANDON_RATE * 100));
+        printf(" Sold seats per minute, fixed hold time: median %d, min %d, max %d %n", fixed[POLICY_ROUNDS / 2],
+                fixed[0], fixed[POLICY_ROUNDS - 1]);
+        printf(" Sold seats per minute, adaptive hold time: median %d, min %d, max %d %n", adaptiveRates[POLICY_ROUNDS / 2],
+                adaptiveRates[0], adaptiveRates[POLICY_ROUNDS - 1]);
+        printf(" Adaptive policy at the end of the last run: hold rate %.1f seats/sec, conversion %.2f, last hold time %d ms %n",
+                adaptive.getSeatRate(), adaptive.getConversion(), adaptive.getLastHoldTime());
+    }
+
+    /**
+     * @return sold seats per minute with the policy
+     */
+    private long testHoldTimePolicy(HoldTimePolicy policy) {
+        final HoldTimePolicy original = ticketServiceImpl.getHoldTimePolicy();
+        ticketServiceImpl.setHoldTimePolicy(policy);
+        try {
+            return testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, NUM_THREADS, 100, ABANDON_RATE).getSoldPerMinute();
+        } finally {
+            ticketServiceImpl.setHoldTimePolicy(original);
+        }
+    }
+
+    /**
+     * Commits compete with holds for the store write lock. Compare how many holds expire before commit with and
+     * without commit priority
+     */
+    private void testCommitPriority() {
+        printHeader("Test holds and commits in one queue");
+        store.setCommitPriority(false);
+        final Worker fifo = testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, PRIORITY_NUM_THREADS, PRIORITY_HOLD_TIME, 0);
+
+        printHeader("Test commit priority");
+        store.setCommitPriority(true);
+        final long delayedBefore = store.getDelayedHoldCount();
+        final long timedOutBefore = store.getHoldDelayTimeoutCount();
+        final Worker priority;
+        try {
+            priority = testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, PRIORITY_NUM_THREADS, PRIORITY_HOLD_TIME, 0);
+        } finally {
+            store.setCommitPriority(false);
+        }
+
+        printf("%n%n    Commit priority: %n");
+        printf(" Hold time, %d ms %n", PRIORITY_HOLD_TIME);
+        printf(" DATA_EXPIRED, one queue: %d of %d commits %n", fifo.getErrorCount(ServiceResult.Status.DATA_EXPIRED), fifo.getCommitCount());
+        printf(" DATA_EXPIRED, commit priority: %d of %d commits %n", priority.getErrorCount(ServiceResult.Status.DATA_EXPIRED), priority.getCommitCount());
+        printf(" Sold seats per minute, one queue %d, commit priority %d %n", fifo.getSoldPerMinute(), priority.getSoldPerMinute());
+        printf(" Delayed holds %d, timed out %d, average delay %.3f ms %n", store.getDelayedHoldCount() - delayedBefore,
+                store.getHoldDelayTimeoutCount() - timedOutBefore, store.getAverageHoldDelayMillis());
+    }
+
+    /**
+     * Measures metrics overhead - cost of one timed operation and throughput with metrics off and on. Dumps metrics
+     * of the last run to a file
+     */
+    private void testMetricsOverhead() throws IOException {
+        //1. Cost of one record, clock reads included. Earlier rounds warm up
+        final int iterations = 1_000_000;
+        final MetricsRegistry local = new MetricsRegistry();
+        double recordNanos = 0;
+        for (int round = 0; round < 5; round++) {
+            final long before = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                local.time("op", local.start());
+            }
+            recordNanos = (System.nanoTime() - before) / (double) iterations;
+        }
+
+        //2. Throughput. Runs alternate, so JIT warm up does not favor one mode, the best run of each mode counts
+        long disabled = 0;
+        long enabled = 0;
+        for (int round = 0; round < 2; round++) {
+            printHeader("Test without metrics");
+            metrics.setEnabled(false);
+            try {
+                disabled = Math.max(disabled, testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, NUM_THREADS, 100, 0).getSoldPerMinute());
+            } finally {
+                metrics.setEnabled(true);
+            }
+            printHeader("Test with metrics");
+            metrics.reset();
+            enabled = Math.max(enabled, testMultipleThreads(POLICY_NUM_ROWS, POLICY_NUM_SEATS, NUM_THREADS, 100, 0).getSoldPerMinute());
+        }
+
+        printf("%n%n    Metrics overhead: %n");
+        printf(" One timed operation, %.1f ns %n", recordNanos);
+        printf(" Sold seats per minute, metrics off %d, metrics on %d, overhead %.1f%% %n", disabled, enabled,
+                100D * (disabled - enabled) / disabled);
+        printf("%n");
+        metrics.report(System.out);
+
+        final Path file = Paths.get("build", "metrics.txt");
+        Files.createDirectories(file.getParent());
+        metrics.dump(file);
+        printf("%n Metrics dumped to %s %n", file.toAbsolutePath());
+    }
+
     /**
      * X thread plus a cleaner are trying to fill the venue.
      * As result:
      * - Whole venue must be filled
-     * - No errors except OptimisticLockException and DataExpired
+     * - No errors except OPTIMISTIC_LOCK, DATA_EXPIRED and SERVICE_BUSY
      * - Performance characteristics must be measured
      * - Errors rate must be measured
+     *
+     * @param abandonRate share of holds customers walk away from
+     * @return aggregated statistics
      */
-    private void testMultipleThreads() {
+    private Worker testMultipleThreads(int numRows, int numSeats, int numThreads, long holdPeriod, double abandonRate) {
         //1. Prepare venue
-        printHeader("Test multi-thread performance");
-        final long holdPeriod = 100;
-        setup(holdPeriod);
+        setup(numRows, numSeats, holdPeriod);
 
         //2. Prepare signals
         final CountDownLatch startSignal = new CountDownLatch(1);
-        final CountDownLatch doneSignal = new CountDownLatch(NUM_THREADS);
+        final CountDownLatch doneSignal = new CountDownLatch(numThreads);
 
         //3. Prepare and start workers
-        final List<Worker> workers = new ArrayList<>(NUM_THREADS);
+        final List<Worker> workers = new ArrayList<>(numThreads);
         final long before = System.currentTimeMillis();
-        for (int i = 0; i < NUM_THREADS; ++i) {
+        for (int i = 0; i < numThreads; ++i) {
             final String name = "Worker " + i;
-            final Worker worker = new Worker(name);
+            final Worker worker = new Worker(name, abandonRate);
             workers.add(worker);
             new Thread(() -> {
                 try {
@@ -187,21 +378,23 @@ public class PerformanceTestApplication extends AbstractApplication {
         final long time = System.currentTimeMillis() - before;
 
         //6. Aggregate results
-        final Worker aggregator = new Worker("aggregator");
+        final Worker aggregator = new Worker("aggregator", 0);
         workers.forEach(aggregator::agregateStat);
+        aggregator.elapsed = time;
 
         //7. Check for errors
         checkConsistency();
-        final Set<Class<? extends ServiceException>> exceptions = new HashSet<>();
+        final Set<String> exceptions = new HashSet<>();
         exceptions.addAll(aggregator.errors.keySet());
-        exceptions.remove(OptimisticLockException.class);
-        exceptions.remove(DataExpired.class);
+        exceptions.remove(ServiceResult.Status.OPTIMISTIC_LOCK.name());
+        exceptions.remove(ServiceResult.Status.DATA_EXPIRED.name());
+        exceptions.remove(ServiceResult.Status.SERVICE_BUSY.name());
         if (aggregator.errors.isEmpty()) {
             printf("%n No errors! %n");
         } else {
             printf("%n Errors: %n");
             aggregator.errors.forEach((k, v) -> {
-                printf("%s -> %d%n", k.getSimpleName(), v.getValue());
+                printf("%s -> %d%n", k, v.getValue());
             });
         }
         if (!exceptions.isEmpty()) {
@@ -213,23 +406,27 @@ public class PerformanceTestApplication extends AbstractApplication {
         //8. Compute statistics
         final int iterations = aggregator.getIterationCount();
         final long throughput = ((long) iterations * 60_000L / time);
+        final long soldPerMinute = aggregator.getSoldPerMinute();
 
         int errorCount = aggregator.getErrorsCount();
 
         //9. Print
         printf("%n%n    Results: %n");
-        printf(" Venue size: %dx%d %n", NUM_ROWS, NUM_SEATS);
-        printf(" Number of thread: %d %n", NUM_THREADS);
+        printf(" Venue size: %dx%d %n", numRows, numSeats);
+        printf(" Number of thread: %d %n", numThreads);
         printf(" Iterations: %d %n", iterations);
         printf(" Time: %d sec %n", time / 1000);
         printf(" Throughput, %d per minute %n", throughput);
         printf(" Average time per iteration %d ms %n", aggregator.getAvgTime());
         printf(" Reservations, total %d ms %n", aggregator.getSuccess());
+        printf(" Abandoned holds, total %d %n", aggregator.getAbandoned());
+        printf(" Sold seats per minute, %d %n", soldPerMinute);
         printf(" Errors, total %d %n", errorCount);
         if (errorCount > 0) {
             final double successErrorRatio = (double) aggregator.getSuccess() / (double) errorCount;
             printf(" Success to error ration, %f %n", successErrorRatio);
         }
+        return aggregator;
     }
 
     class Worker implements Runnable {
@@ -238,9 +435,12 @@ public class PerformanceTestApplication extends AbstractApplication {
         private final int PAUSE_MS = 1000;
 
         private int success;
-        private Map<Class<? extends ServiceException>, MutableInt> errors = new HashMap<>();
+        private long soldSeats;
+        private int abandoned;
+        private Map<String, MutableInt> errors = new HashMap<>();
 
         private long time;
+        private long elapsed;
         private int iterationCount = 0;
 
         private List<Long> times = new ArrayList<>();
@@ -248,9 +448,11 @@ public class PerformanceTestApplication extends AbstractApplication {
         private long avgTime;
 
         private final String name;
+        private final double abandonRate;
 
-        Worker(String name) {
+        Worker(String name, double abandonRate) {
             this.name = name;
+            this.abandonRate = abandonRate;
         }
 
         @Override
@@ -266,27 +468,38 @@ public class PerformanceTestApplication extends AbstractApplication {
                         int numSeats = (int) Math.abs(Math.round(random.nextGaussian() * MAX_NUM_SEATS)) + 1;
                         numSeats = Math.min(numSeats, available);
 
-                        final SeatHold seatHold = ticketService.findAndHoldSeats(numSeats, name);
-                        if (seatHold.getSeats().size() != numSeats) {
-                            log.error("Invalid hold size, expecting {}, result {}", numSeats, seatHold.getSeats().size());
-                            throw new RuntimeException("Invalid result");
+                        final ServiceResult<SeatHold> seatHold = ticketService.tryFindAndHoldSeats(numSeats, name);
+                        if (seatHold.getStatus() == ServiceResult.Status.NO_SEATS_AVAILABLE) {
+                            log.debug(seatHold.getMessage());
+                            pause(PAUSE_MS);
+                        } else if (!seatHold.isOk()) {
+                            addError(seatHold);
+                        } else {
+                            if (seatHold.getValue().getSeats().size() != numSeats) {
+                                log.error("Invalid hold size, expecting {}, result {}", numSeats, seatHold.getValue().getSeats().size());
+                                throw new RuntimeException("Invalid result");
+                            }
+
+                            if (random.nextDouble() < abandonRate) {
+                                //Customer walks away, seats are back when the hold expires
+                                abandoned++;
+                            } else {
+                                final ServiceResult<String> confirmation = ticketService.tryReserveSeats(seatHold.getValue().getId(), name);
+                                if (confirmation.isOk()) {
+                                    success++;
+                                    soldSeats += numSeats;
+                                } else {
+                                    addError(confirmation);
+                                }
+                            }
                         }
-
-                        ticketService.reserveSeats(seatHold.getId(), name);
-                        success++;
                     } else {
                         log.debug("No seats available - pause");
                         pause(PAUSE_MS);
                     }
-                } catch (OptimisticLockException | DataExpired e) {
-                    log.debug(e.getMessage());
-                    errors.computeIfAbsent(e.getClass(), k -> new MutableInt(0)).increment();
-                } catch (NoSeatsAvailable e) {
-                    log.debug(e.getMessage());
-                    pause(PAUSE_MS);
                 } catch (ServiceException e) {
                     log.error("Unexpected exception {}", e.toString()); //Do not print stacktrace
-                    errors.computeIfAbsent(e.getClass(), k -> new MutableInt(0)).increment();
+                    errors.computeIfAbsent(e.getClass().getSimpleName(), k -> new MutableInt(0)).increment();
                 }
                 final SeatsCounter counter = store.countReserved();
                 final Venue venue = venueService.getVenue();
@@ -301,6 +514,11 @@ public class PerformanceTestApplication extends AbstractApplication {
             time = System.currentTimeMillis() - before;
         }
 
+        private void addError(ServiceResult<?> result) {
+            log.debug(result.getMessage());
+            errors.computeIfAbsent(result.getStatus().name(), k -> new MutableInt(0)).increment();
+        }
+
         long getTime() {
             return time;
         }
@@ -313,8 +531,30 @@ public class PerformanceTestApplication extends AbstractApplication {
             return iterationCount;
         }
 
+        int getAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Valid for aggregated statistics only
+         */
+        long getSoldPerMinute() {
+            return soldSeats * 60_000L / elapsed;
+        }
+
+        int getErrorCount(ServiceResult.Status status) {
+            final MutableInt count = errors.get(status.name());
+            return count == null ? 0 : count.intValue();
+        }
+
+        int getCommitCount() {
+            return success + getErrorCount(ServiceResult.Status.DATA_EXPIRED);
+        }
+
         void agregateStat(Worker another) {
             success += another.success;
+            soldSeats += another.soldSeats;
+            abandoned += another.abandoned;
             time += another.time;
             iterationCount += another.iterationCount;
             another.errors.forEach((k, v) -> errors.computeIfAbsent(k, newK -> new MutableInt(0)).add(v.getValue()));
@@ -333,7 +573,7 @@ public class PerformanceTestApplication extends AbstractApplication {
 
         int getErrorsCount() {
             int errorCount = 0;
-            for (Map.Entry<Class<? extends ServiceException>, MutableInt> keyValue : errors.entrySet()) {
+            for (Map.Entry<String, MutableInt> keyValue : errors.entrySet()) {
                 errorCount += keyValue.getValue().toInteger();
             }
             return errorCount;
@@ -0,0 +1,57 @@
+package com.rockyrunstream.walmart;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.impl.trace.TraceReader;
+import com.rockyrunstream.walmart.load.LoadResult;
+import com.rockyrunstream.walmart.load.TraceReplayer;
+import org.springframework.boot.SpringApplication;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Replays a recorded trace against a fresh service, an empty venue of the recorded size. Hold time is divided by the
+ * speed, so abandoned holds expire at the same point of the replay.
+ *
+ * System properties:
+ *  - trace - trace file, build/load-on-sale.trace by default
+ *  - speed - replay speed, 1 by default
+ */
+public class ReplayApplication extends AbstractApplication {
+
+    private static final String DEFAULT_TRACE = "build/load-on-sale.trace";
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReplayApplication.class, args);
+    }
+
+    @Override
+    protected void execute(String[] args) throws Exception {
+        final Path file = Paths.get(System.getProperty("trace", DEFAULT_TRACE));
+        final double speed = Double.parseDouble(System.getProperty("speed", "1"));
+        printHeader("Replay " + file);
+
+        try (InputStream in = Files.newInputStream(file); TraceReader trace = new TraceReader(in)) {
+            //1. Venue as recorded
+            final Venue venue = VenueGenerator.generate(trace.getNumRows(), trace.getNumSeats());
+            venue.setMaxHoldTime(Math.max(1, (long) (trace.getMaxHoldTime() / speed)));
+            venueService.setVenue(venue);
+            store.drop();
+
+            //2. Replay
+            final TraceReplayer replayer = new TraceReplayer(ticketService);
+            replayer.setSpeed(speed);
+            final LoadResult result = replayer.replay(trace);
+            if (!store.isConsistent()) {
+                throw new RuntimeException("Store contains double-booked seats");
+            }
+
+            //3. Print
+            printf("%n%n    Results: %n");
+            printf(" Venue size: %dx%d, hold time %d ms %n", trace.getNumRows(), trace.getNumSeats(), venue.getMaxHoldTime());
+            result.print(System.out);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.rockyrunstream.walmart;
+
+import com.rockyrunstream.walmart.impl.CustomerThrottle;
+import com.rockyrunstream.walmart.impl.metrics.LatencySnapshot;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import com.rockyrunstream.walmart.load.GroupSize;
+import com.rockyrunstream.walmart.load.RegressionCheck;
+import com.rockyrunstream.walmart.load.ScalabilityResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the service across a matrix of thread counts, venue sizes, hold times and group sizes. Every cell is a
+ * closed-loop run for a fixed time, the venue is emptied whenever it sells out. Latency percentiles and retries are
+ * counted for successful holds only, fast NO_SEATS_AVAILABLE failures would hide the real cost of a hold. Results are
+ * written to CSV and JSON and compared with the baseline, the run fails if a cell regressed.
+ *
+ * System properties, lists are comma separated:
+ *  - threads - 1,4,16,64 by default
+ *  - venues - rows x seats, 100x100,1000x200 by default
+ *  - holdTimes - ms, 1000,10000 by default
+ *  - groups - {@link GroupSize} names, SMALL,FAMILY,LARGE by default
+ *  - duration - seconds per cell, 5 by default. A warm-up of 1 second precedes every cell
+ *  - output - results file name without extension, build/scalability by default
+ *  - baseline - baseline CSV, scalability-baseline.csv by default. Comparison is skipped if the file does not exist
+ *  - threshold - allowed change against the baseline, percent, 10 by default
+ *  - saveBaseline - true to replace the baseline with the results
+ */
+public class ScalabilityApplication extends AbstractApplication {
+
+    private static final Logger log = LoggerFactory.getLogger(ScalabilityApplication.class);
+
+    //Share of holds customers walk away from, hold time matters only if some holds expire
+    private static final double ABANDON_RATE = 0.1;
+
+    private static final long WARM_UP = TimeUnit.SECONDS.toMillis(1);
+
+    /*
+     * Timers of successful calls
+     */
+    private static final String HOLD = "scalability.hold";
+    private static final String RESERVE = "scalability.reserve";
+
+    private final Object refillLock = new Object();
+
+    /**
+     * Venue refills in the current cell
+     */
+    private final LongAdder lastRefills = new LongAdder();
+
+    @Autowired
+    private CustomerThrottle customerThrottle;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    public static void main(String[] args) {
+        SpringApplication.run(ScalabilityApplication.class, args);
+    }
+
+    @Override
+    protected void execute(String[] args) throws Exception {
+        //Every worker is a crowd of customers sharing one email
+        customerThrottle.setEnabled(false);
+        metrics.setEnabled(true);
+
+        //1. Matrix
+        final String[] threads = System.getProperty("threads", "1,4,16,64").split(",");
+        final String[] venues = System.getProperty("venues", "100x100,1000x200").split(",");
+        final String[] holdTimes = System.getProperty("holdTimes", "1000,10000").split(",");
+        final String[] groups = System.getProperty("groups", "SMALL,FAMILY,LARGE").split(",");
+        final long duration = TimeUnit.SECONDS.toMillis(Long.parseLong(System.getProperty("duration", "5")));
+
+        //2. Run every cell
+        final List<ScalabilityResult> results = new ArrayList<>();
+        for (String venue : venues) {
+            for (String holdTime : holdTimes) {
+                for (String group : groups) {
+                    for (String numThreads : threads) {
+                        final ScalabilityResult result = runCell(Integer.parseInt(numThreads), venue,
+                                Long.parseLong(holdTime), GroupSize.valueOf(group), duration);
+                        printf("%s: %.1f holds/s, hold p99 %.2f ms, retries %.3f per hold, %d refills %n", result.getKey(),
+                                result.getHoldsPerSec(), result.getHoldP99Ms(), result.getRetryRate(), lastRefills.sum());
+                        results.add(result);
+                    }
+                }
+            }
+        }
+
+        //3. Write results
+        final Path output = Paths.get(System.getProperty("output", "build/scalability"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        final Path csv = Paths.get(output + ".csv");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(csv), false, StandardCharsets.UTF_8.name())) {
+            out.println(ScalabilityResult.CSV_HEADER);
+            results.forEach(result -> out.println(result.toCsv()));
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(output + ".json")), false, StandardCharsets.UTF_8.name())) {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                out.print("  " + results.get(i).toJson());
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        }
+        printf("%n Results written to %s.csv and %s.json %n", output.toAbsolutePath(), output.toAbsolutePath());
+
+        //4. Compare with the baseline
+        final Path baseline = Paths.get(System.getProperty("baseline", "scalability-baseline.csv"));
+        if (Boolean.parseBoolean(System.getProperty("saveBaseline", "false"))) {
+            Files.copy(csv, baseline, StandardCopyOption.REPLACE_EXISTING);
+            printf(" Baseline saved to %s %n", baseline.toAbsolutePath());
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            printf(" No baseline at %s, run with -DsaveBaseline=true to save one %n", baseline.toAbsolutePath());
+            return;
+        }
+        final double threshold = Double.parseDouble(System.getProperty("threshold", "10"));
+        printHeader("Compare with " + baseline);
+        final List<String> regressions = new RegressionCheck(RegressionCheck.readCsv(baseline), threshold)
+                .compare(results, System.out);
+        if (!regressions.isEmpty()) {
+            printf("%n Regressions over %.0f%%: %n", threshold);
+            regressions.forEach(this::println);
+            throw new RuntimeException(regressions.size() + " regressions against " + baseline);
+        }
+        printf("%n No regressions over %.0f%% %n", threshold);
+    }
+
+    private ScalabilityResult runCell(int numThreads, String venueSize, long holdTime, GroupSize groups, long duration)
+            throws InterruptedException {
+        final String[] size = venueSize.split("x");
+        final int numRows = Integer.parseInt(size[0]);
+        final int numSeats = Integer.parseInt(size[1]);
+
+        //1. Warm up on a fresh venue, then measure on another one
+        setup(numRows, numSeats, holdTime);
+        runWorkers(numThreads, groups, WARM_UP, new LongAdder(), new LongAdder(), new LongAdder());
+        setup(numRows, numSeats, holdTime);
+        metrics.reset();
+        lastRefills.reset();
+
+        //2. Measure
+        final long gcBefore = gcMillis();
+        final LongAdder holds = new LongAdder();
+        final LongAdder reservations = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+        final long elapsed = runWorkers(numThreads, groups, duration, holds, reservations, allocated);
+        final long gc = gcMillis() - gcBefore;
+        if (!store.isConsistent()) {
+            throw new RuntimeException("Store contains double-booked seats");
+        }
+
+        //3. Collect
+        final double seconds = elapsed / 1_000D;
+        final LatencySnapshot hold = metrics.getLatency(HOLD);
+        final LatencySnapshot reserve = metrics.getLatency(RESERVE);
+        return new ScalabilityResult(numThreads, venueSize, holdTime, groups, seconds, holds.sum() / seconds,
+                reservations.sum() / seconds, millis(hold, 50), millis(hold, 99), millis(hold, 99.9), millis(reserve, 99),
+                holds.sum() == 0 ? 0 : metrics.getCount("service.retries") / (double) holds.sum(), gc,
+                allocated.sum() < 0 || holds.sum() == 0 ? -1 : allocated.sum() / holds.sum());
+    }
+
+    private void setup(int numRows, int numSeats, long maxHoldTime) {
+        final Venue venue = VenueGenerator.generate(numRows, numSeats);
+        venue.setMaxHoldTime(maxHoldTime);
+        venueService.setVenue(venue);
+        store.drop();
+    }
+
+    /**
+     * Runs workers for the duration, refills the venue when it sells out
+     *
+     * @param allocated bytes allocated by workers, negative if not supported
+     * @return elapsed time, ms
+     */
+    private long runWorkers(int numThreads, GroupSize groups, long duration, LongAdder holds, LongAdder reservations,
+                            LongAdder allocated) throws InterruptedException {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final CountDownLatch doneSignal = new CountDownLatch(numThreads);
+        final long[] deadline = new long[1];
+        for (int i = 0; i < numThreads; i++) {
+            final String name = "scalability-" + i;
+            new Thread(() -> {
+                try {
+                    startSignal.await();
+                    final long allocatedBefore = allocatedBytes();
+                    work(name, groups, deadline[0], holds, reservations);
+                    final long allocatedAfter = allocatedBytes();
+                    allocated.add(allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+                } catch (InterruptedException e) {
+                    log.error(e.getMessage(), e);
+                } finally {
+                    doneSignal.countDown();
+                }
+            }, name).start();
+        }
+        final long before = System.currentTimeMillis();
+        deadline[0] = before + duration;
+        startSignal.countDown();
+        doneSignal.await();
+        return System.currentTimeMillis() - before;
+    }
+
+    private void work(String name, GroupSize groups, long deadline, LongAdder holds, LongAdder reservations) {
+        final Random random = new Random();
+        while (System.currentTimeMillis() < deadline) {
+            final int numSeats = groups.next(random);
+            long start = System.nanoTime();
+            final ServiceResult<SeatHold> seatHold = ticketService.tryFindAndHoldSeats(numSeats, name);
+            if (seatHold.getStatus() == ServiceResult.Status.NO_SEATS_AVAILABLE) {
+                refill(numSeats);
+                continue;
+            }
+            if (!seatHold.isOk()) {
+                continue;
+            }
+            metrics.timer(HOLD).recordSince(start);
+            holds.increment();
+            if (random.nextDouble() >= ABANDON_RATE) {
+                start = System.nanoTime();
+                if (ticketService.tryReserveSeats(seatHold.getValue().getId(), name).isOk()) {
+                    metrics.timer(RESERVE).recordSince(start);
+                    reservations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the venue if it is still sold out, one worker refills it, the others see seats again
+     */
+    private void refill(int numSeats) {
+        synchronized (refillLock) {
+            if (ticketService.numSeatsAvailable() < numSeats) {
+                store.drop();
+                lastRefills.increment();
+            }
+        }
+    }
+
+    private static double millis(LatencySnapshot latency, double percentile) {
+        return latency == null ? 0 : latency.getPercentileMicros(percentile) / 1_000;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes allocated by the calling thread, -1 if not supported
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
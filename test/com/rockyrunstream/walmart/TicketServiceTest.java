@@ -1,8 +1,15 @@
 package com.rockyrunstream.walmart;
 
 import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.metrics.RequestTracer;
+import com.rockyrunstream.walmart.impl.metrics.SlowRequest;
+import com.rockyrunstream.walmart.impl.model.Reservation;
 import com.rockyrunstream.walmart.impl.model.Venue;
 import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import com.rockyrunstream.walmart.impl.trace.TraceEvent;
+import com.rockyrunstream.walmart.impl.trace.TraceReader;
+import com.rockyrunstream.walmart.impl.trace.TraceRecorder;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,6 +19,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = TicketServiceTestConfiguration.class)
 public class TicketServiceTest {
@@ -25,6 +38,15 @@ public class TicketServiceTest {
     @Autowired
     private ReservationStore store;
 
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+
     @Before
     public void setup() {
         final Venue venue = VenueGenerator.generate(10, 20);
@@ -81,4 +103,215 @@ public class TicketServiceTest {
         Assert.assertEquals(afterCompleted, before - numSeatsReserved);
     }
 
+    @Test
+    public void confirmationHashedInBackground() throws InterruptedException {
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "12");
+        ticketService.reserveSeats(seatHold.getId(), "12");
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        String confirmationCode = null;
+        while (System.currentTimeMillis() < deadline) {
+            confirmationCode = store.getReservationBySeatHoldId(seatHold.getId()).get().getConfirmationCode();
+            if (confirmationCode.startsWith("PBKDF2")) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(confirmationCode, confirmationCode.startsWith("PBKDF2WithHmacSHA1:10000:"));
+    }
+
+    @Test
+    public void verifyConfirmation() throws InterruptedException {
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "12");
+        final String token = ticketService.reserveSeats(seatHold.getId(), "12");
+        //Either the commitment or the slow hash, both verify
+        Assert.assertTrue(ticketService.verifyConfirmation(token));
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline
+                && !store.getReservationBySeatHoldId(seatHold.getId()).get().getConfirmationCode().startsWith("PBKDF2")) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(ticketService.verifyConfirmation(token));
+
+        final char[] wrong = token.toCharArray();
+        wrong[0] = wrong[0] == 'a' ? 'b' : 'a';
+        Assert.assertFalse(ticketService.verifyConfirmation(new String(wrong)));
+        Assert.assertFalse(ticketService.verifyConfirmation(""));
+    }
+
+    @Test
+    public void resultNoSeatsAvailable() {
+        final ServiceResult<SeatHold> result = ticketService.tryFindAndHoldSeats(1000, "12");
+        Assert.assertEquals(ServiceResult.Status.NO_SEATS_AVAILABLE, result.getStatus());
+        Assert.assertNull(result.getValue());
+    }
+
+    @Test
+    public void resultInvalidSeatsId() {
+        ticketService.findAndHoldSeats(1, "12");
+        final ServiceResult<String> result = ticketService.tryReserveSeats(1235, "12");
+        Assert.assertEquals(ServiceResult.Status.BAD_REQUEST, result.getStatus());
+    }
+
+    @Test
+    public void idempotentHold() {
+        final int available = ticketService.numSeatsAvailable();
+        final SeatHold first = ticketService.findAndHoldSeats(2, "12", "request-1");
+        final SeatHold retry = ticketService.findAndHoldSeats(2, "12", "request-1");
+        Assert.assertEquals(first.getId(), retry.getId());
+        Assert.assertEquals(available - 2, ticketService.numSeatsAvailable());
+    }
+
+    @Test
+    public void guessingThrottled() {
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(ServiceResult.Status.BAD_REQUEST, ticketService.tryReserveSeats(1235 + i, "guesser").getStatus());
+        }
+        Assert.assertEquals(ServiceResult.Status.THROTTLED, ticketService.tryReserveSeats(1245, "guesser").getStatus());
+    }
+
+    @Test
+    public void ownerNotThrottled() {
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "victim");
+        for (int i = 0; i < 10; i++) {
+            ticketService.tryReserveSeats(1235 + i, "victim");
+        }
+        Assert.assertEquals(ServiceResult.Status.THROTTLED, ticketService.tryReserveSeats(1245, "victim").getStatus());
+        Assert.assertTrue(ticketService.tryReserveSeats(seatHold.getId(), "victim").isOk());
+    }
+
+    @Test
+    public void customerQueries() {
+        final SeatHold reserved = ticketService.findAndHoldSeats(2, "customer");
+        final SeatHold held = ticketService.findAndHoldSeats(1, "customer");
+        ticketService.reserveSeats(reserved.getId(), "customer");
+
+        final List<SeatHold> holds = ticketService.getHoldsByCustomer("customer");
+        Assert.assertEquals(1, holds.size());
+        Assert.assertEquals(held.getId(), holds.get(0).getId());
+        Assert.assertEquals(1, holds.get(0).getSeats().size());
+
+        final List<SeatReservation> reservations = ticketService.getReservationsByCustomer("customer");
+        Assert.assertEquals(1, reservations.size());
+        Assert.assertEquals(reserved.getId(), reservations.get(0).getSeatHoldId());
+        Assert.assertEquals(2, reservations.get(0).getSeats().size());
+
+        Assert.assertTrue(ticketService.getHoldsByCustomer("nobody").isEmpty());
+    }
+
+    @Test
+    public void metrics() {
+        final long holds = metrics.getLatency("service.findAndHoldSeats") == null ? 0 : metrics.getLatency("service.findAndHoldSeats").getCount();
+        final long noSeats = metrics.getCount("exception.NoSeatsAvailable");
+        final long seatsHeld = metrics.getCount("store.seatsHeld");
+
+        ticketService.tryFindAndHoldSeats(2, "12");
+        ticketService.tryFindAndHoldSeats(1000, "12");
+
+        Assert.assertEquals(holds + 2, metrics.getLatency("service.findAndHoldSeats").getCount());
+        Assert.assertEquals(noSeats + 1, metrics.getCount("exception.NoSeatsAvailable"));
+        Assert.assertEquals(seatsHeld + 2, metrics.getCount("store.seatsHeld"));
+        Assert.assertTrue(metrics.getLatency("store.tryCreateReservation").getCount() > 0);
+        Assert.assertTrue(metrics.getLatency("finder.find").getCount() > 0);
+    }
+
+    @Test
+    public void slowRequestTraced() {
+        requestTracer.setThreshold(0, TimeUnit.MILLISECONDS);
+        requestTracer.clear();
+        try {
+            ticketService.findAndHoldSeats(2, "12");
+        } finally {
+            requestTracer.setThreshold(50, TimeUnit.MILLISECONDS);
+        }
+
+        final SlowRequest request = requestTracer.getSlowRequests().get(0);
+        Assert.assertEquals("OK", request.getStatus());
+        Assert.assertEquals(2, request.getNumSeats());
+        Assert.assertTrue(request.getSegmentsScanned() > 0);
+        Assert.assertTrue(request.getPhaseNanos(RequestTracer.Phase.FIND_SEATS) > 0);
+        Assert.assertTrue(request.getPhaseNanos(RequestTracer.Phase.CREATE_RESERVATION) > 0);
+    }
+
+    @Test
+    public void traceRecorded() throws Exception {
+        final Path file = Files.createTempFile("trace", ".bin");
+        try {
+            traceRecorder.start(file);
+            try {
+                ticketService.numSeatsAvailable();
+                final SeatHold seatHold = ticketService.findAndHoldSeats(2, "12");
+                ticketService.reserveSeats(seatHold.getId(), "12");
+            } finally {
+                traceRecorder.stop();
+            }
+
+            try (InputStream in = Files.newInputStream(file); TraceReader reader = new TraceReader(in)) {
+                Assert.assertEquals(TraceEvent.Type.NUM_SEATS_AVAILABLE, reader.read().getType());
+                final TraceEvent hold = reader.read();
+                Assert.assertEquals(TraceEvent.Type.FIND_AND_HOLD_SEATS, hold.getType());
+                Assert.assertEquals(2, hold.getNumSeats());
+                final TraceEvent reserve = reader.read();
+                Assert.assertEquals(TraceEvent.Type.RESERVE_SEATS, reserve.getType());
+                Assert.assertEquals(hold.getSeatHoldId(), reserve.getSeatHoldId());
+                Assert.assertEquals(hold.getCustomer(), reserve.getCustomer());
+                Assert.assertEquals(ServiceResult.Status.OK, reserve.getStatus());
+                Assert.assertNull(reader.read());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void resultReserve() {
+        final ServiceResult<SeatHold> seatHold = ticketService.tryFindAndHoldSeats(2, "12");
+        Assert.assertTrue(seatHold.isOk());
+        final ServiceResult<String> result = ticketService.tryReserveSeats(seatHold.getValue().getId(), "12");
+        Assert.assertTrue(result.isOk());
+        Assert.assertNotNull(result.getValue());
+    }
+
+    @Test
+    public void releaseHold() {
+        final int before = ticketService.numSeatsAvailable();
+        final SeatHold seatHold = ticketService.findAndHoldSeats(10, "12");
+        Assert.assertEquals(before - 10, ticketService.numSeatsAvailable());
+
+        ticketService.releaseHold(seatHold.getId(), "12");
+        Assert.assertEquals(before, ticketService.numSeatsAvailable());
+
+        //Released hold can not be reserved
+        Assert.assertEquals(ServiceResult.Status.DATA_EXPIRED, ticketService.tryReserveSeats(seatHold.getId(), "12").getStatus());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void releaseReservedHold() {
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "12");
+        ticketService.reserveSeats(seatHold.getId(), "12");
+        ticketService.releaseHold(seatHold.getId(), "12");
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void releaseInvalidEmail() {
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "12");
+        ticketService.releaseHold(seatHold.getId(), "1332");
+    }
+
+    @Test
+    public void holdExpires() throws InterruptedException {
+        final Venue venue = VenueGenerator.generate(10, 20);
+        venue.setMaxHoldTime(50);
+        venueService.setVenue(venue);
+
+        final SeatHold seatHold = ticketService.findAndHoldSeats(1, "12");
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (store.getReservationBySeatHoldId(seatHold.getId()).get().getState() != Reservation.State.EXPIRED
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(Reservation.State.EXPIRED, store.getReservationBySeatHoldId(seatHold.getId()).get().getState());
+    }
+
 }
@@ -0,0 +1,123 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.ServiceResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControllerTest {
+
+    private AdmissionController controller;
+
+    @Before
+    public void setup() {
+        controller = new AdmissionController();
+        controller.setMinLimit(1);
+        controller.setMaxLimit(2);
+    }
+
+    @Test
+    public void admitsUpToLimit() {
+        final ServiceResult<AdmissionController.Admission> first = controller.admit();
+        final ServiceResult<AdmissionController.Admission> second = controller.admit();
+        Assert.assertTrue(first.isOk());
+        Assert.assertTrue(second.isOk());
+        Assert.assertEquals(2, controller.getInFlight());
+
+        first.getValue().close();
+        first.getValue().close();
+        Assert.assertEquals(1, controller.getInFlight());
+    }
+
+    @Test
+    public void fullWaitingRoom() {
+        controller.setQueueCapacity(0);
+        controller.admit();
+        controller.admit();
+
+        final ServiceResult<AdmissionController.Admission> result = controller.admit();
+        Assert.assertEquals(ServiceResult.Status.SERVICE_BUSY, result.getStatus());
+        Assert.assertEquals(1, controller.getRejectedCount());
+    }
+
+    @Test
+    public void deadline() {
+        controller.admit();
+        controller.admit();
+
+        final ServiceResult<AdmissionController.Admission> result = controller.admit(20, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(ServiceResult.Status.SERVICE_BUSY, result.getStatus());
+        Assert.assertEquals(1, controller.getTimedOutCount());
+        Assert.assertEquals(0, controller.getQueueLength());
+    }
+
+    @Test
+    public void waiterAdmittedInOrder() throws Exception {
+        final AdmissionController.Admission first = controller.admit().getValue();
+        controller.admit();
+
+        final CompletableFuture<ServiceResult<AdmissionController.Admission>> waiter =
+                CompletableFuture.supplyAsync(() -> controller.admit(10, TimeUnit.SECONDS));
+        while (controller.getQueueLength() == 0) {
+            Thread.sleep(1);
+        }
+        first.close();
+
+        Assert.assertTrue(waiter.get(5, TimeUnit.SECONDS).isOk());
+        Assert.assertEquals(2, controller.getInFlight());
+        Assert.assertEquals(1, controller.getQueuedCount());
+    }
+
+    @Test
+    public void asyncWaiter() throws Exception {
+        final AdmissionController.Admission first = controller.admit().getValue();
+        controller.admit();
+
+        final CompletableFuture<ServiceResult<AdmissionController.Admission>> waiter = controller.admitAsync();
+        Assert.assertFalse(waiter.isDone());
+        Assert.assertEquals(1, controller.getQueueLength());
+        first.close();
+
+        Assert.assertTrue(waiter.get(5, TimeUnit.SECONDS).isOk());
+        Assert.assertEquals(2, controller.getInFlight());
+    }
+
+    @Test
+    public void asyncDeadline() throws Exception {
+        controller.setMaxWaitMillis(20);
+        controller.admit();
+        controller.admit();
+
+        final ServiceResult<AdmissionController.Admission> result = controller.admitAsync().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(ServiceResult.Status.SERVICE_BUSY, result.getStatus());
+        Assert.assertEquals(1, controller.getTimedOutCount());
+        Assert.assertEquals(0, controller.getQueueLength());
+    }
+
+    @Test
+    public void retriesCutLimit() {
+        controller.setMaxLimit(100);
+        controller.setWindowSize(10);
+
+        //1. Grow the limit while requests are queued
+        for (int i = 0; i < 10; i++) {
+            final AdmissionController.Admission admission = controller.admit().getValue();
+            controller.admit(0, TimeUnit.MILLISECONDS);
+            admission.close();
+        }
+        Assert.assertEquals(3, controller.getLimit());
+
+        //2. Retry storm
+        for (int i = 0; i < 10; i++) {
+            final AdmissionController.Admission admission = controller.admit().getValue();
+            controller.onRetry();
+            controller.onRetry();
+            admission.close();
+        }
+        Assert.assertEquals(2, controller.getLimit());
+        Assert.assertEquals(2, controller.getLastRetryRate(), 0.001);
+    }
+}
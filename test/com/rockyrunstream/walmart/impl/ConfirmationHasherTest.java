@@ -0,0 +1,20 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfirmationHasherTest {
+
+    @Test
+    public void droppedAfterShutdown() {
+        final ConfirmationHasher hasher = new ConfirmationHasher();
+        hasher.init();
+        hasher.shutdown();
+
+        final char[] token = "secret".toCharArray();
+        hasher.submit(1, "commitment", token);
+        Assert.assertArrayEquals("******".toCharArray(), token);
+        Assert.assertEquals(1, hasher.getDroppedCount());
+        Assert.assertEquals(0, hasher.getOverflowCount());
+    }
+}
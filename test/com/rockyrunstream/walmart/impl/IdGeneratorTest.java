@@ -0,0 +1,108 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IdGeneratorTest {
+
+    private IdGenerator generator;
+
+    @Before
+    public void setup() {
+        generator = new IdGenerator();
+        ReflectionTestUtils.setField(generator, "randomService", new RandomService());
+        generator.init();
+    }
+
+    @Test
+    public void unique() {
+        final Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            final int id = generator.nextSeatHoldId();
+            Assert.assertTrue(id >= 0);
+            Assert.assertTrue("Duplicate id " + id, ids.add(id));
+        }
+    }
+
+    @Test
+    public void notSequential() {
+        final int first = generator.nextSeatHoldId();
+        final int second = generator.nextSeatHoldId();
+        Assert.assertNotEquals(1, Math.abs((long) second - first));
+    }
+
+    @Test
+    public void uniqueConcurrent() throws Exception {
+        final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Set<Future<Boolean>> futures = new HashSet<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    boolean unique = true;
+                    for (int i = 0; i < 10_000; i++) {
+                        unique &= ids.add(generator.nextSeatHoldId());
+                    }
+                    return unique;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(40_000, ids.size());
+    }
+
+    @Test
+    public void mightBeIssued() {
+        final Set<Integer> issued = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final int id = generator.nextSeatHoldId();
+            issued.add(id);
+            Assert.assertTrue(generator.mightBeIssued(id));
+        }
+        //Only block-sized counter ranges were handed out, almost every other id must be rejected
+        int passed = 0;
+        for (int id = 0; id < 100_000; id++) {
+            if (!issued.contains(id) && generator.mightBeIssued(id)) {
+                passed++;
+            }
+        }
+        Assert.assertTrue("Passed " + passed, passed < 10);
+        Assert.assertFalse(generator.mightBeIssued(-1));
+    }
+
+    @Test
+    public void shard() {
+        generator.setShard(5, 4);
+        for (int i = 0; i < 1000; i++) {
+            final int id = generator.nextSeatHoldId();
+            Assert.assertTrue(id >= 0);
+            Assert.assertEquals(5, generator.getShard(id));
+        }
+    }
+
+    @Test
+    public void permutation() {
+        final FeistelPermutation permutation = new FeistelPermutation(new byte[16], 9);
+        final Set<Long> values = new HashSet<>();
+        for (long i = 0; i < 512; i++) {
+            final long encrypted = permutation.encrypt(i);
+            Assert.assertTrue(encrypted < 512);
+            Assert.assertEquals(i, permutation.decrypt(encrypted));
+            values.add(encrypted);
+        }
+        Assert.assertEquals(512, values.size());
+    }
+}
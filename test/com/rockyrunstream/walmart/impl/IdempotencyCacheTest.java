@@ -0,0 +1,130 @@
+package com.rockyrunstream.walmart.impl;
+
+import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.ServiceResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdempotencyCacheTest {
+
+    private IdempotencyCache cache;
+
+    private AtomicInteger holds;
+
+    @Before
+    public void setup() {
+        cache = new IdempotencyCache();
+        holds = new AtomicInteger();
+    }
+
+    @Test
+    public void repeat() {
+        final SeatHold first = hold("a@test.com", "key1", 2).join().getValue();
+        final SeatHold second = hold("a@test.com", "key1", 2).join().getValue();
+        Assert.assertEquals(first.getId(), second.getId());
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, holds.get());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void keysScopedByCustomer() {
+        hold("a@test.com", "key1", 2).join();
+        hold("b@test.com", "key1", 2).join();
+        Assert.assertEquals(2, holds.get());
+    }
+
+    @Test
+    public void anotherRequest() {
+        hold("a@test.com", "key1", 2).join();
+        Assert.assertEquals(ServiceResult.Status.BAD_REQUEST, hold("a@test.com", "key1", 3).join().getStatus());
+    }
+
+    @Test
+    public void coalesce() {
+        final CompletableFuture<ServiceResult<SeatHold>> pending = new CompletableFuture<>();
+        final CompletableFuture<ServiceResult<SeatHold>> first = cache.getOrHold("a@test.com", "key1", 2, () -> pending);
+        final CompletableFuture<ServiceResult<SeatHold>> second = hold("a@test.com", "key1", 2);
+        Assert.assertFalse(second.isDone());
+        Assert.assertEquals(0, holds.get());
+
+        pending.complete(ServiceResult.ok(seatHold(42)));
+        Assert.assertEquals(42, first.join().getValue().getId());
+        Assert.assertEquals(42, second.join().getValue().getId());
+        Assert.assertEquals(1, cache.getCoalescedCount());
+    }
+
+    @Test
+    public void failureNotRemembered() {
+        cache.getOrHold("a@test.com", "key1", 2,
+                () -> CompletableFuture.completedFuture(ServiceResult.failure(ServiceResult.Status.OPTIMISTIC_LOCK, "Collision")));
+        Assert.assertTrue(hold("a@test.com", "key1", 2).join().isOk());
+        Assert.assertEquals(1, holds.get());
+    }
+
+    @Test
+    public void ttl() throws Exception {
+        cache.setTtl(10, TimeUnit.MILLISECONDS);
+        hold("a@test.com", "key1", 2).join();
+        Thread.sleep(20);
+        hold("a@test.com", "key1", 2).join();
+        Assert.assertEquals(2, holds.get());
+        Assert.assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void holdExpired() throws Exception {
+        final SeatHold expiring = seatHold(42);
+        expiring.setExpireAt(System.currentTimeMillis() + 10);
+        cache.getOrHold("a@test.com", "key1", 2, () -> CompletableFuture.completedFuture(ServiceResult.ok(expiring)));
+        Thread.sleep(20);
+        Assert.assertEquals(1, hold("a@test.com", "key1", 2).join().getValue().getId());
+        Assert.assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void forget() {
+        final SeatHold first = hold("a@test.com", "key1", 2).join().getValue();
+        cache.forget(first.getId());
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNotEquals(first.getId(), hold("a@test.com", "key1", 2).join().getValue().getId());
+
+        //Unknown hold
+        cache.forget(12345);
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void maxEntries() {
+        cache.setMaxEntries(10);
+        for (int i = 0; i < 20; i++) {
+            hold("a@test.com", "key" + i, 2).join();
+        }
+        Assert.assertEquals(10, cache.getSize());
+        Assert.assertEquals(10, cache.getEvictionCount());
+
+        //Oldest keys are forgotten
+        hold("a@test.com", "key0", 2).join();
+        Assert.assertEquals(21, holds.get());
+    }
+
+    private CompletableFuture<ServiceResult<SeatHold>> hold(String email, String key, int numSeats) {
+        return cache.getOrHold(email, key, numSeats,
+                () -> CompletableFuture.completedFuture(ServiceResult.ok(seatHold(holds.incrementAndGet()))));
+    }
+
+    private static SeatHold seatHold(int id) {
+        final SeatHold seatHold = new SeatHold();
+        seatHold.setId(id);
+        seatHold.setExpireAt(System.currentTimeMillis() + 60_000);
+        seatHold.setSeats(new ArrayList<>());
+        return seatHold;
+    }
+}
@@ -0,0 +1,46 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedTokenBucketTest {
+
+    @Test
+    public void burst() {
+        final StripedTokenBucket bucket = new StripedTokenBucket(1024, 3, 1, 0);
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertTrue(bucket.hasToken("a@test.com", 100));
+        Assert.assertTrue(bucket.tryAcquire("A@TEST.COM", 100));
+        Assert.assertFalse(bucket.hasToken("a@test.com", 100));
+        Assert.assertFalse(bucket.tryAcquire("a@test.com", 100));
+    }
+
+    @Test
+    public void refill() {
+        final StripedTokenBucket bucket = new StripedTokenBucket(1024, 2, 2, 0);
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertFalse(bucket.tryAcquire("a@test.com", 100));
+
+        //2 per second - one token every 500 ms, even if checked often
+        for (long now = 101; now < 600; now += 7) {
+            Assert.assertFalse(bucket.tryAcquire("a@test.com", now));
+        }
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 610));
+        Assert.assertFalse(bucket.tryAcquire("a@test.com", 610));
+
+        //Never more than capacity
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100_000));
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100_000));
+        Assert.assertFalse(bucket.tryAcquire("a@test.com", 100_000));
+    }
+
+    @Test
+    public void independentKeys() {
+        final StripedTokenBucket bucket = new StripedTokenBucket(1024, 1, 1, 0);
+        Assert.assertTrue(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertFalse(bucket.tryAcquire("a@test.com", 100));
+        Assert.assertTrue(bucket.tryAcquire("b@test.com", 100));
+    }
+}
@@ -0,0 +1,71 @@
+package com.rockyrunstream.walmart.impl;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class TokenPoolTest {
+
+    private TokenPool pool;
+
+    @Before
+    public void setup() {
+        pool = new TokenPool();
+        ReflectionTestUtils.setField(pool, "randomService", new RandomService());
+        pool.setCapacity(64);
+        pool.setLowWatermark(16);
+        pool.init();
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void initialFill() {
+        Assert.assertEquals(64, pool.getTokenCount());
+        Assert.assertEquals(64, pool.getSaltCount());
+    }
+
+    @Test
+    public void tokens() {
+        final Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            char[] token = pool.pollToken();
+            if (token == null) {
+                token = pool.generateToken();
+            }
+            Assert.assertEquals(TokenGenerator.TOKEN_SIZE, token.length);
+            for (char ch : token) {
+                Assert.assertTrue(Character.isLetterOrDigit(ch));
+            }
+            Assert.assertTrue(tokens.add(new String(token)));
+        }
+    }
+
+    @Test
+    public void salts() {
+        final byte[] salt = pool.pollSalt();
+        Assert.assertNotNull(salt);
+        Assert.assertEquals(TokenGenerator.SALT_BYTES, salt.length);
+    }
+
+    @Test
+    public void refill() throws InterruptedException {
+        for (int i = 0; i < 60; i++) {
+            pool.pollToken();
+        }
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getTokenCount() < 64 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(64, pool.getTokenCount());
+        Assert.assertTrue(pool.getRefillCount() > 1);
+    }
+}
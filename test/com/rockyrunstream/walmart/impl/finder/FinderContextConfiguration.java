@@ -1,5 +1,7 @@
 package com.rockyrunstream.walmart.impl.finder;
 
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.metrics.RequestTracer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,6 +13,16 @@ public class FinderContextConfiguration {
         return new SeatValueFunctionFactory();
     }
 
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    @Bean
+    public RequestTracer requestTracer() {
+        return new RequestTracer();
+    }
+
     @Bean
     public SimpleSeatFinder simpleSeatFinder() {
         return new SimpleSeatFinder();
@@ -0,0 +1,71 @@
+package com.rockyrunstream.walmart.impl.hold;
+
+import com.rockyrunstream.walmart.impl.model.Venue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveHoldTimePolicyTest {
+
+    private static final long HOLD_TIME = 1_000;
+
+    private AdaptiveHoldTimePolicy policy;
+    private Venue venue;
+
+    @Before
+    public void setup() {
+        policy = new AdaptiveHoldTimePolicy();
+        venue = new Venue();
+        venue.setMaxHoldTime(HOLD_TIME);
+    }
+
+    @Test
+    public void quiet() {
+        Assert.assertEquals(2 * HOLD_TIME, policy.getHoldTime(venue, 1_000, 1));
+    }
+
+    @Test
+    public void highDemand() {
+        //10 seats per ms, 1000 available seats are gone in 100 ms
+        simulate(10, 1, 1);
+        final long holdTime = policy.getHoldTime(venue, 1_000, 10_000);
+        Assert.assertEquals(HOLD_TIME / 4, holdTime);
+    }
+
+    @Test
+    public void moderateDemand() {
+        //1 seat per ms, 5000 available seats are gone in 5 hold periods
+        simulate(1, 1, 1);
+        final long converted = policy.getHoldTime(venue, 5_000, 10_000);
+
+        policy = new AdaptiveHoldTimePolicy();
+        simulate(1, 1, 0);
+        final long abandoned = policy.getHoldTime(venue, 5_000, 10_000);
+
+        Assert.assertEquals(HOLD_TIME / 2, converted, 5);
+        Assert.assertTrue(converted > abandoned);
+        Assert.assertTrue(abandoned >= HOLD_TIME / 4);
+    }
+
+    @Test
+    public void demandDrops() {
+        simulate(10, 1, 1);
+        Assert.assertEquals(HOLD_TIME / 4, policy.getHoldTime(venue, 10_000, 10_000));
+        //Nothing happens for a minute
+        Assert.assertEquals(2 * HOLD_TIME, policy.getHoldTime(venue, 10_000, 70_000));
+    }
+
+    /**
+     * Creates holds every ms for 10 seconds
+     */
+    private void simulate(int seatsPerMs, int holdsPerMs, double conversion) {
+        for (long now = 1; now < 10_000; now++) {
+            for (int i = 0; i < holdsPerMs; i++) {
+                policy.onHoldCreated(seatsPerMs / holdsPerMs, now);
+                if (now % 10 < conversion * 10) {
+                    policy.onHoldReserved(now);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.rockyrunstream.walmart.impl.jfr;
+
+import com.rockyrunstream.walmart.impl.store.CommitOutcome;
+import com.rockyrunstream.walmart.impl.store.ReservationStore;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+public class FlightEventsTest {
+
+    @Test
+    public void storeTransaction() throws Exception {
+        Assume.assumeTrue(FlightEvents.AVAILABLE);
+        final ReservationStore store = new ReservationStore();
+
+        final Path file = Files.createTempFile("store", ".jfr");
+        try (Recording recording = new Recording()) {
+            FlightEvents.configure(recording, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+            recording.start();
+            Assert.assertEquals(CommitOutcome.NOT_FOUND, store.commitHold(12345, "customer@example.com", System.currentTimeMillis(), "code"));
+            recording.stop();
+            recording.dump(file);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            final RecordedEvent event = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("com.rockyrunstream.walmart.StoreTransaction"))
+                    .filter(e -> "COMMIT_HOLD".equals(e.getString("operation")))
+                    .findFirst().orElseThrow(AssertionError::new);
+            Assert.assertEquals("NOT_FOUND", event.getString("outcome"));
+            Assert.assertTrue(event.getBoolean("write"));
+            Assert.assertTrue(event.getLong("lockWait") >= 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
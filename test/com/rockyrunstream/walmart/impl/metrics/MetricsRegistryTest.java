@@ -0,0 +1,72 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry metrics;
+
+    @Before
+    public void setup() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    public void percentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            metrics.timer("op").record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        final LatencySnapshot latency = metrics.getLatency("op");
+        Assert.assertEquals(1000, latency.getCount());
+        Assert.assertEquals(500, latency.getPercentileMicros(50), 1);
+        Assert.assertEquals(999, latency.getPercentileMicros(99.9), 1);
+        Assert.assertEquals(1000, latency.getMaxMicros(), 1);
+        Assert.assertEquals(500.5, latency.getMeanMicros(), 1);
+    }
+
+    @Test
+    public void snapshotsAccumulate() {
+        metrics.timer("op").record(1_000);
+        Assert.assertEquals(1, metrics.getLatency("op").getCount());
+        metrics.timer("op").record(1_000);
+        Assert.assertEquals(2, metrics.getLatency("op").getCount());
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getLatency("op").getCount());
+    }
+
+    @Test
+    public void disabled() {
+        metrics.setEnabled(false);
+        metrics.time("op", metrics.start());
+        metrics.increment("counter");
+
+        Assert.assertNull(metrics.getLatency("op"));
+        Assert.assertEquals(0, metrics.getCount("counter"));
+    }
+
+    @Test
+    public void dump() throws Exception {
+        metrics.time("op", metrics.start());
+        metrics.add("counter", 3);
+
+        final Path file = Files.createTempFile("metrics", ".txt");
+        try {
+            metrics.dump(file);
+            final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Assert.assertTrue(content, content.contains("op "));
+            Assert.assertTrue(content, content.contains("counter "));
+            Assert.assertTrue(content, content.contains("Percentile"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
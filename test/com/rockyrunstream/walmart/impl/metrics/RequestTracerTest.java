@@ -0,0 +1,113 @@
+package com.rockyrunstream.walmart.impl.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+public class RequestTracerTest {
+
+    private RequestTracer tracer;
+
+    @Before
+    public void setup() {
+        tracer = new RequestTracer();
+        tracer.setThreshold(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void breakdown() {
+        Assert.assertTrue(tracer.begin("hold", 3));
+        Assert.assertFalse("Nested request is part of the outer one", tracer.begin("nested", 1));
+        final long start = tracer.now();
+        Assert.assertNotEquals(0, start);
+        tracer.phase(RequestTracer.Phase.FIND_SEATS, start);
+        tracer.retry();
+        tracer.segmentsScanned(5);
+        tracer.segmentsScanned(4);
+        tracer.end("OK");
+
+        final List<SlowRequest> requests = tracer.getSlowRequests();
+        Assert.assertEquals(1, requests.size());
+        final SlowRequest request = requests.get(0);
+        Assert.assertEquals("hold", request.getOperation());
+        Assert.assertEquals("OK", request.getStatus());
+        Assert.assertEquals(3, request.getNumSeats());
+        Assert.assertEquals(1, request.getRetries());
+        Assert.assertEquals(9, request.getSegmentsScanned());
+        Assert.assertTrue(request.getPhaseNanos(RequestTracer.Phase.FIND_SEATS) > 0);
+        Assert.assertEquals(0, request.getPhaseNanos(RequestTracer.Phase.GET_SEAT_MAP));
+        Assert.assertTrue(request.getTotalNanos() >= request.getPhaseNanos(RequestTracer.Phase.FIND_SEATS));
+    }
+
+    @Test
+    public void fastRequestNotKept() {
+        tracer.setThreshold(1, TimeUnit.MINUTES);
+        tracer.begin("hold", 1);
+        tracer.end("OK");
+        Assert.assertTrue(tracer.getSlowRequests().isEmpty());
+        Assert.assertEquals(1, tracer.getTracedCount());
+        Assert.assertEquals(0, tracer.getSlowCount());
+        Assert.assertEquals("Not tracing outside of a request", 0, tracer.now());
+    }
+
+    @Test
+    public void ringBuffer() {
+        tracer.setCapacity(3);
+        for (int i = 1; i <= 5; i++) {
+            tracer.begin("hold", i);
+            tracer.end("OK");
+        }
+        final List<SlowRequest> requests = tracer.getSlowRequests();
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(3, requests.get(0).getNumSeats());
+        Assert.assertEquals(5, requests.get(2).getNumSeats());
+    }
+
+    @Test
+    public void export() throws Exception {
+        tracer.begin("hold", 2);
+        tracer.end("NO_SEATS_AVAILABLE");
+
+        final Path file = Files.createTempFile("slow", ".csv");
+        try {
+            tracer.export(file);
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Assert.assertEquals(2, lines.size());
+            Assert.assertTrue(lines.get(0), lines.get(0).endsWith("FIND_SEATS,CREATE_RESERVATION"));
+            Assert.assertTrue(lines.get(1), lines.get(1).contains(",hold,NO_SEATS_AVAILABLE,2,0,0,"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void exportIgnoresLocale() throws Exception {
+        final Locale locale = Locale.getDefault();
+        final Thread thread = Thread.currentThread();
+        final String name = thread.getName();
+        final Path file = Files.createTempFile("slow", ".csv");
+        try {
+            //Comma as the decimal separator and in the thread name
+            Locale.setDefault(Locale.GERMANY);
+            thread.setName("worker, \"1\"");
+            tracer.begin("hold", 2);
+            tracer.end("OK");
+            tracer.export(file);
+
+            final String line = Files.readAllLines(file, StandardCharsets.UTF_8).get(1);
+            Assert.assertTrue(line, line.contains(",\"worker, \"\"1\"\"\",hold,OK,2,0,0,"));
+            Assert.assertTrue(line, line.matches(".*,\\d+\\.\\d,\\d+\\.\\d$"));
+        } finally {
+            Locale.setDefault(locale);
+            thread.setName(name);
+            Files.delete(file);
+        }
+    }
+}
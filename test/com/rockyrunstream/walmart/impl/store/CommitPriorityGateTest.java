@@ -0,0 +1,65 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class CommitPriorityGateTest {
+
+    private CommitPriorityGate gate;
+
+    @Before
+    public void setup() {
+        gate = new CommitPriorityGate();
+        gate.setEnabled(true);
+    }
+
+    @Test
+    public void disabled() {
+        gate.setEnabled(false);
+        Assert.assertFalse(gate.commitArrived());
+        gate.awaitHoldTurn();
+        Assert.assertEquals(0, gate.getDelayedHolds());
+    }
+
+    @Test
+    public void noCommits() {
+        gate.awaitHoldTurn();
+        Assert.assertEquals(0, gate.getDelayedHolds());
+    }
+
+    @Test
+    public void holdWaitsForCommit() throws Exception {
+        gate.setMaxHoldDelay(10, TimeUnit.SECONDS);
+        Assert.assertTrue(gate.commitArrived());
+
+        final CompletableFuture<Void> hold = CompletableFuture.runAsync(gate::awaitHoldTurn);
+        try {
+            hold.get(100, TimeUnit.MILLISECONDS);
+            Assert.fail("Hold must wait for the commit");
+        } catch (TimeoutException e) {
+            //Expected
+        }
+
+        gate.commitDone();
+        hold.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, gate.getDelayedHolds());
+        Assert.assertEquals(0, gate.getTimedOutHolds());
+    }
+
+    @Test
+    public void holdDelayIsBounded() {
+        gate.setMaxHoldDelay(20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(gate.commitArrived());
+
+        gate.awaitHoldTurn();
+        Assert.assertEquals(1, gate.getDelayedHolds());
+        Assert.assertEquals(1, gate.getTimedOutHolds());
+        Assert.assertTrue(gate.getAverageHoldDelayMillis() >= 20);
+        gate.commitDone();
+    }
+}
@@ -0,0 +1,44 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class LockProfilerTest {
+
+    private LockProfiler profiler;
+
+    @Before
+    public void setup() {
+        profiler = new LockProfiler();
+    }
+
+    @Test
+    public void keepsSlowest() {
+        for (int i = 1; i <= 100; i++) {
+            profiler.criticalSection(StoreOperation.CREATE, 0, i * 37 % 101);
+        }
+        profiler.criticalSection(StoreOperation.GET_SEAT_MAP, 0, 1_000);
+
+        final List<LockProfiler.CriticalSection> slowest = profiler.getSlowest();
+        Assert.assertEquals(10, slowest.size());
+        Assert.assertEquals("GET_SEAT_MAP", slowest.get(0).getOperation());
+        Assert.assertEquals(1_000, slowest.get(0).getHoldNanos());
+        Assert.assertEquals(100, slowest.get(1).getHoldNanos());
+        Assert.assertEquals(92, slowest.get(9).getHoldNanos());
+    }
+
+    @Test
+    public void queueLength() {
+        profiler.sampleQueue(0);
+        profiler.sampleQueue(4);
+        Assert.assertEquals(2, profiler.getAverageQueueLength(), 0.001);
+        Assert.assertEquals(4, profiler.getMaxQueueLength());
+
+        profiler.reset();
+        Assert.assertEquals(0, profiler.getAverageQueueLength(), 0.001);
+        Assert.assertTrue(profiler.getSlowest().isEmpty());
+    }
+}
@@ -0,0 +1,195 @@
+package com.rockyrunstream.walmart.impl.store;
+
+import com.rockyrunstream.walmart.impl.model.Reservation;
+import com.rockyrunstream.walmart.impl.model.ReservationSeat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.rockyrunstream.walmart.impl.model.Reservation.State.*;
+
+public class ReservationStoreTest {
+
+    private static final String EMAIL = "customer@example.com";
+
+    private ReservationStore store;
+
+    private int nextId;
+
+    @Before
+    public void setup() {
+        store = new ReservationStore();
+        ReflectionTestUtils.setField(store, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        nextId = 1;
+    }
+
+    @After
+    public void after() {
+        Assert.assertTrue(store.isConsistent());
+    }
+
+    @Test
+    public void commitHold() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0, 1);
+
+        Assert.assertEquals(CommitOutcome.COMMITTED, store.commitHold(hold.getSeatHoldId(), EMAIL, System.currentTimeMillis(), "code"));
+
+        final Reservation stored = store.getReservationBySeatHoldId(hold.getSeatHoldId()).get();
+        Assert.assertEquals(COMPLETED, stored.getState());
+        Assert.assertEquals("code", stored.getConfirmationCode());
+        Assert.assertEquals(2, store.countReserved().getReserved());
+        Assert.assertEquals(0, store.countReserved().getPending());
+    }
+
+    @Test
+    public void lookupKey() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0);
+        Assert.assertFalse(store.getReservationByLookupKey("key").isPresent());
+
+        store.commitHold(hold.getSeatHoldId(), EMAIL, System.currentTimeMillis(), "code", "key");
+        Assert.assertEquals(hold.getSeatHoldId(), store.getReservationByLookupKey("key").get().getSeatHoldId());
+        Assert.assertFalse(store.getReservationByLookupKey("another").isPresent());
+    }
+
+    @Test
+    public void commitHoldTwice() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0);
+        store.commitHold(hold.getSeatHoldId(), EMAIL, System.currentTimeMillis(), "code");
+        Assert.assertEquals(CommitOutcome.INVALID_STATE, store.commitHold(hold.getSeatHoldId(), EMAIL, System.currentTimeMillis(), "code"));
+    }
+
+    @Test
+    public void commitHoldNotFound() {
+        Assert.assertEquals(CommitOutcome.NOT_FOUND, store.commitHold(12345, EMAIL, System.currentTimeMillis(), "code"));
+    }
+
+    @Test
+    public void commitHoldNotOwner() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0);
+        Assert.assertEquals(CommitOutcome.NOT_OWNER, store.commitHold(hold.getSeatHoldId(), "another", System.currentTimeMillis(), "code"));
+        Assert.assertEquals(PENDING, store.getReservationBySeatHoldId(hold.getSeatHoldId()).get().getState());
+    }
+
+    @Test
+    public void commitHoldExpired() {
+        final long now = System.currentTimeMillis();
+        final Reservation hold = createHold(now + 10, 0, 0);
+        Assert.assertEquals(CommitOutcome.EXPIRED, store.commitHold(hold.getSeatHoldId(), EMAIL, now + 20, "code"));
+    }
+
+    @Test
+    public void overdueHoldIsAvailable() {
+        createHold(System.currentTimeMillis() - 1, 0, 0, 1);
+        createHold(System.currentTimeMillis() + 10_000, 1, 0);
+
+        Assert.assertEquals(1, store.countReserved().getPending());
+        Assert.assertEquals(1, store.getSeatMap().getPendingSeats().size());
+    }
+
+    @Test
+    public void overdueHoldExpiredByNewHold() {
+        final Reservation overdue = createHold(System.currentTimeMillis() - 1, 0, 0, 1);
+        createHold(System.currentTimeMillis() + 10_000, 0, 1);
+
+        Assert.assertEquals(EXPIRED, store.getReservationBySeatHoldId(overdue.getSeatHoldId()).get().getState());
+        Assert.assertEquals(1, store.countReserved().getPending());
+    }
+
+    @Test
+    public void expireDue() {
+        final long now = System.currentTimeMillis();
+        createHold(now + 1_000, 0, 0);
+        createHold(now + 2_000, 0, 1);
+        createHold(now + 100_000, 0, 2);
+        Assert.assertEquals(now + 1_000, store.nextExpiration());
+
+        final long[] expired = store.expireDue(now + 3_000);
+        Assert.assertArrayEquals(new long[] {now + 1_000, now + 2_000}, expired);
+        Assert.assertEquals(now + 100_000, store.nextExpiration());
+        Assert.assertEquals(1, store.countReserved().getPending());
+    }
+
+    @Test
+    public void releaseHold() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0);
+        Assert.assertEquals(ReleaseOutcome.RELEASED, store.releaseHold(hold.getSeatHoldId(), EMAIL));
+        Assert.assertEquals(ReleaseOutcome.ALREADY_RELEASED, store.releaseHold(hold.getSeatHoldId(), EMAIL));
+        Assert.assertEquals(0, store.countReserved().getTotal());
+        Assert.assertEquals(Long.MAX_VALUE, store.nextExpiration());
+    }
+
+    @Test
+    public void customerIndex() {
+        final long now = System.currentTimeMillis();
+        final Reservation committed = createHold(now + 10_000, 0, 0);
+        final Reservation pending = createHold(now + 10_000, 0, 1);
+        final Reservation released = createHold(now + 10_000, 0, 2);
+        final Reservation expired = createHold(now + 1_000, 0, 3);
+        store.commitHold(committed.getSeatHoldId(), EMAIL, now, "code");
+        store.releaseHold(released.getSeatHoldId(), EMAIL);
+        store.expireDue(now + 2_000);
+
+        final List<Reservation> holds = store.getHoldsByCustomer(EMAIL);
+        Assert.assertEquals(1, holds.size());
+        Assert.assertEquals(pending.getId(), holds.get(0).getId());
+
+        final List<Reservation> reservations = store.getReservationsByCustomer(EMAIL);
+        Assert.assertEquals(1, reservations.size());
+        Assert.assertEquals(committed.getId(), reservations.get(0).getId());
+        Assert.assertEquals(COMPLETED, reservations.get(0).getState());
+        Assert.assertNull(reservations.get(0).getConfirmationCode());
+
+        Assert.assertTrue(store.getHoldsByCustomer("another").isEmpty());
+        Assert.assertNotEquals(expired.getId(), holds.get(0).getId());
+    }
+
+    @Test
+    public void holdOwners() {
+        final long now = System.currentTimeMillis();
+        final Reservation committed = createHold(now + 10_000, 0, 0);
+        final Reservation released = createHold(now + 10_000, 0, 1);
+        final Reservation expired = createHold(now + 1_000, 0, 2);
+        Assert.assertTrue(store.isHeldBy(committed.getSeatHoldId(), EMAIL));
+        Assert.assertFalse(store.isHeldBy(committed.getSeatHoldId(), "another"));
+
+        store.commitHold(committed.getSeatHoldId(), EMAIL, now, "code");
+        store.releaseHold(released.getSeatHoldId(), EMAIL);
+        store.expireDue(now + 2_000);
+        Assert.assertFalse(store.isHeldBy(committed.getSeatHoldId(), EMAIL));
+        Assert.assertFalse(store.isHeldBy(released.getSeatHoldId(), EMAIL));
+        Assert.assertFalse(store.isHeldBy(expired.getSeatHoldId(), EMAIL));
+    }
+
+    @Test
+    public void customerIndexOwnerChange() {
+        final Reservation hold = createHold(System.currentTimeMillis() + 10_000, 0, 0);
+        final Reservation update = store.getReservationBySeatHoldId(hold.getSeatHoldId()).get();
+        update.setEmail("another");
+        store.updateReservation(update);
+
+        Assert.assertTrue(store.getHoldsByCustomer(EMAIL).isEmpty());
+        Assert.assertEquals(1, store.getHoldsByCustomer("another").size());
+    }
+
+    private Reservation createHold(long expiresAt, int row, int... seats) {
+        final Reservation reservation = new Reservation();
+        reservation.setId(nextId);
+        reservation.setSeatHoldId(nextId * 10);
+        nextId++;
+        reservation.setState(PENDING);
+        reservation.setEmail(EMAIL);
+        reservation.setExpiresAt(expiresAt);
+        final List<ReservationSeat> list = new ArrayList<>();
+        for (int seat : seats) {
+            list.add(new ReservationSeat(row, seat));
+        }
+        reservation.setSeats(list);
+        return store.createReservation(reservation);
+    }
+}
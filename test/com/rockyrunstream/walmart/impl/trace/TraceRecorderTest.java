@@ -0,0 +1,96 @@
+package com.rockyrunstream.walmart.impl.trace;
+
+import com.rockyrunstream.walmart.ServiceResult;
+import com.rockyrunstream.walmart.VenueGenerator;
+import com.rockyrunstream.walmart.impl.VenueService;
+import com.rockyrunstream.walmart.impl.model.Venue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TraceRecorderTest {
+
+    private TraceRecorder recorder;
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        final Venue venue = VenueGenerator.generate(10, 20);
+        venue.setMaxHoldTime(1000);
+        final VenueService venueService = new VenueService();
+        venueService.setVenue(venue);
+        recorder = new TraceRecorder();
+        ReflectionTestUtils.setField(recorder, "venueService", venueService);
+        file = Files.createTempFile("trace", ".bin");
+    }
+
+    @After
+    public void after() throws IOException {
+        recorder.stop();
+        Files.delete(file);
+    }
+
+    @Test
+    public void record() throws IOException {
+        Assert.assertEquals("Not recording", 0, recorder.now());
+        recorder.start(file);
+        recorder.record(TraceEvent.Type.FIND_AND_HOLD_SEATS, recorder.now(), "a@example.com", 3, 7, ServiceResult.Status.OK);
+        recorder.record(TraceEvent.Type.NUM_SEATS_AVAILABLE, recorder.now(), null, 0, TraceEvent.NO_SEAT_HOLD, ServiceResult.Status.OK);
+        recorder.record(TraceEvent.Type.RESERVE_SEATS, recorder.now(), "a@example.com", 0, 7, ServiceResult.Status.DATA_EXPIRED);
+        recorder.record(TraceEvent.Type.FIND_AND_HOLD_SEATS, recorder.now(), "b@example.com", 1, TraceEvent.NO_SEAT_HOLD,
+                ServiceResult.Status.NO_SEATS_AVAILABLE);
+        recorder.stop();
+        Assert.assertEquals(4, recorder.getRecordedCount());
+
+        try (InputStream in = Files.newInputStream(file); TraceReader reader = new TraceReader(in)) {
+            Assert.assertEquals(10, reader.getNumRows());
+            Assert.assertEquals(20, reader.getNumSeats());
+            Assert.assertEquals(1000, reader.getMaxHoldTime());
+
+            final TraceEvent hold = reader.read();
+            Assert.assertEquals(TraceEvent.Type.FIND_AND_HOLD_SEATS, hold.getType());
+            Assert.assertEquals(1, hold.getCustomer());
+            Assert.assertEquals(3, hold.getNumSeats());
+            Assert.assertEquals(7, hold.getSeatHoldId());
+
+            Assert.assertEquals(0, reader.read().getCustomer());
+
+            final TraceEvent reserve = reader.read();
+            Assert.assertEquals(TraceEvent.Type.RESERVE_SEATS, reserve.getType());
+            Assert.assertEquals(1, reserve.getCustomer());
+            Assert.assertEquals(ServiceResult.Status.DATA_EXPIRED, reserve.getStatus());
+            Assert.assertTrue(reserve.getOffsetNanos() >= hold.getOffsetNanos());
+
+            final TraceEvent failed = reader.read();
+            Assert.assertEquals(2, failed.getCustomer());
+            Assert.assertEquals(TraceEvent.NO_SEAT_HOLD, failed.getSeatHoldId());
+
+            Assert.assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void outOfOrder() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TraceWriter writer = new TraceWriter(out, 0, 1, 1, 1)) {
+            writer.write(new TraceEvent(TraceEvent.Type.RELEASE_HOLD, 5_000_000, 1_000, 1, 0, 3, null));
+            writer.write(new TraceEvent(TraceEvent.Type.RELEASE_HOLD, 4_000_000, 1_000, 1, 0, 3, null));
+        }
+
+        final TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(5_000_000, reader.read().getOffsetNanos());
+        final TraceEvent earlier = reader.read();
+        Assert.assertEquals(4_000_000, earlier.getOffsetNanos());
+        Assert.assertNull(earlier.getStatus());
+    }
+}
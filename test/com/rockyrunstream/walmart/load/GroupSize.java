@@ -0,0 +1,47 @@
+package com.rockyrunstream.walmart.load;
+
+import java.util.Random;
+
+/**
+ * Distributions of seats requested by one customer
+ */
+public enum GroupSize {
+    /**
+     * Always 1
+     */
+    SINGLES {
+        @Override
+        public int next(Random random) {
+            return 1;
+        }
+    },
+    /**
+     * 1 to 4, uniformly
+     */
+    SMALL {
+        @Override
+        public int next(Random random) {
+            return random.nextInt(4) + 1;
+        }
+    },
+    /**
+     * Mostly small, sometimes larger groups. Same as PerformanceTestApplication workers
+     */
+    FAMILY {
+        @Override
+        public int next(Random random) {
+            return (int) Math.abs(Math.round(random.nextGaussian() * 5)) + 1;
+        }
+    },
+    /**
+     * Group bookings, 6 to 20, uniformly
+     */
+    LARGE {
+        @Override
+        public int next(Random random) {
+            return random.nextInt(15) + 6;
+        }
+    };
+
+    public abstract int next(Random random);
+}
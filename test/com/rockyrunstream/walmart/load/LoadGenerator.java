@@ -0,0 +1,215 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.ServiceException;
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+import com.rockyrunstream.walmart.ServiceResult;
+import com.rockyrunstream.walmart.TicketService;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load driver. Customers arrive on the schedule of a {@link LoadProfile} whether or not earlier customers
+ * are served, a customer checks availability, holds seats and reserves them or walks away. Some customers who walk
+ * away release the hold, the others leave it to expire.
+ *
+ * Response time is measured from the intended start, so time spent waiting for a free worker counts - a stalled
+ * service shows up in the percentiles instead of slowing down the load (coordinated omission). Service time,
+ * measured from the actual start, is recorded next to it
+ */
+public class LoadGenerator {
+
+    public static final String SESSION = "session";
+    public static final String NUM_SEATS_AVAILABLE = "numSeatsAvailable";
+    public static final String FIND_AND_HOLD_SEATS = "findAndHoldSeats";
+    public static final String RESERVE_SEATS = "reserveSeats";
+    public static final String RELEASE_HOLD = "releaseHold";
+
+    /**
+     * All operations, a session first
+     */
+    public static final String[] OPERATIONS = {SESSION, NUM_SEATS_AVAILABLE, FIND_AND_HOLD_SEATS, RESERVE_SEATS, RELEASE_HOLD};
+
+    /**
+     * Suffix of service time timers
+     */
+    public static final String SERVICE_TIME = ".service";
+
+    /**
+     * Delay from intended to actual session start
+     */
+    public static final String START_DELAY = "startDelay";
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final TicketService ticketService;
+
+    private int threads = 64;
+
+    private double abandonRate = 0.2;
+
+    private double releaseRate = 0.5;
+
+    private int maxNumSeats = 5;
+
+    private long seed = 42;
+
+    public LoadGenerator(TicketService ticketService) {
+        this.ticketService = ticketService;
+    }
+
+    /**
+     * Runs the profile and waits for customers in flight
+     */
+    public LoadResult run(LoadProfile profile) {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, "load-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.prestartAllCoreThreads();
+        final Random random = new Random(seed);
+
+        //1. Issue arrivals on schedule, never wait for the service
+        final long start = System.nanoTime();
+        int arrivals = 0;
+        long offset = 0;
+        while ((offset = profile.nextArrival(offset)) >= 0) {
+            final long intended = start + offset;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            final String email = "customer" + (++arrivals) + "@example.com";
+            final int numSeats = random.nextInt(maxNumSeats) + 1;
+            final boolean abandon = random.nextDouble() < abandonRate;
+            final boolean release = abandon && random.nextDouble() < releaseRate;
+            executor.execute(() -> session(metrics, intended, email, numSeats, abandon, release));
+        }
+        final long scheduled = System.nanoTime() - start;
+
+        //2. Drain
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Customers still in flight after 1 minute, {} queued", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new LoadResult("profile " + profile, profile.getDurationNanos(), metrics, arrivals, scheduled,
+                System.nanoTime() - start);
+    }
+
+    private void session(MetricsRegistry metrics, long intended, String email, int numSeats, boolean abandon, boolean release) {
+        metrics.timer(START_DELAY).recordSince(intended);
+
+        //1. Customer looks at the venue, then acts as soon as the previous step is done
+        call(metrics, NUM_SEATS_AVAILABLE, intended, () -> ServiceResult.ok(ticketService.numSeatsAvailable()));
+        final ServiceResult<SeatHold> hold = call(metrics, FIND_AND_HOLD_SEATS, System.nanoTime(),
+                () -> ticketService.tryFindAndHoldSeats(numSeats, email));
+
+        //2. Reserve, unless the customer walks away. Walking away customers release the hold or leave it to expire
+        if (hold != null && hold.isOk()) {
+            if (!abandon) {
+                call(metrics, RESERVE_SEATS, System.nanoTime(), () -> ticketService.tryReserveSeats(hold.getValue().getId(), email));
+            } else if (release) {
+                call(metrics, RELEASE_HOLD, System.nanoTime(), () -> ticketService.tryReleaseHold(hold.getValue().getId(), email));
+            }
+        }
+        metrics.timer(SESSION).recordSince(intended);
+    }
+
+    /**
+     * Calls the service, records response and service time and the result status
+     *
+     * @param intended intended start of the call, {@link System#nanoTime()}
+     * @return call result, null if the call failed with an exception
+     */
+    static <T> ServiceResult<T> call(MetricsRegistry metrics, String operation, long intended, Supplier<ServiceResult<T>> call) {
+        final long start = System.nanoTime();
+        ServiceResult<T> result = null;
+        String status;
+        try {
+            result = call.get();
+            status = result.getStatus().name();
+        } catch (ServiceException e) {
+            status = e.getClass().getSimpleName();
+        }
+        final long end = System.nanoTime();
+        metrics.timer(operation).record(end - intended);
+        metrics.timer(operation + SERVICE_TIME).record(end - start);
+        metrics.increment(operation + "." + status);
+        return result;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads workers serving customers. When all are busy arrivals queue up, the queue time is part of
+     *                response time
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    public double getAbandonRate() {
+        return abandonRate;
+    }
+
+    /**
+     * @param abandonRate share of customers who hold seats and never reserve them
+     */
+    public void setAbandonRate(double abandonRate) {
+        this.abandonRate = abandonRate;
+    }
+
+    public double getReleaseRate() {
+        return releaseRate;
+    }
+
+    /**
+     * @param releaseRate share of abandoning customers who release the hold explicitly, the others let it expire
+     */
+    public void setReleaseRate(double releaseRate) {
+        this.releaseRate = releaseRate;
+    }
+
+    public int getMaxNumSeats() {
+        return maxNumSeats;
+    }
+
+    /**
+     * @param maxNumSeats customers ask for 1 to max seats, uniformly
+     */
+    public void setMaxNumSeats(int maxNumSeats) {
+        if (maxNumSeats <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - maxNumSeats must be positive");
+        }
+        this.maxNumSeats = maxNumSeats;
+    }
+
+    /**
+     * @param seed seed of customer choices, runs with the same seed and profile issue the same requests
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
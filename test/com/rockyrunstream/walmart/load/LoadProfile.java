@@ -0,0 +1,175 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arrival rate over time, a sequence of stages with the rate changing linearly within a stage. Arrivals are spaced
+ * by one request of the rate integral, so runs with the same profile issue the same requests at the same times
+ */
+public class LoadProfile {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Stage> stages;
+
+    private final long durationNanos;
+
+    private LoadProfile(List<Stage> stages) {
+        this.stages = Collections.unmodifiableList(stages);
+        long duration = 0;
+        for (Stage stage : stages) {
+            duration += stage.durationNanos;
+        }
+        this.durationNanos = duration;
+    }
+
+    /**
+     * @param rate requests per second
+     */
+    public static LoadProfile constant(double rate, long duration, TimeUnit unit) {
+        return builder().ramp(rate, rate, duration, unit).build();
+    }
+
+    /**
+     * Ticket sale opening: the peak rate from the start, decaying linearly to the base rate, then the base rate until
+     * the end
+     *
+     * @param peakRate requests per second when the sale opens
+     * @param baseRate requests per second after the rush
+     */
+    public static LoadProfile onSale(double peakRate, double baseRate, long peak, long decay, long duration, TimeUnit unit) {
+        return builder()
+                .ramp(peakRate, peakRate, peak, unit)
+                .ramp(peakRate, baseRate, decay, unit)
+                .ramp(baseRate, baseRate, duration - peak - decay, unit)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param offsetNanos time since the run start
+     * @return requests per second at the time, zero after the end
+     */
+    public double getRate(long offsetNanos) {
+        long stageStart = 0;
+        for (Stage stage : stages) {
+            if (offsetNanos < stageStart + stage.durationNanos) {
+                final double progress = (offsetNanos - stageStart) / (double) stage.durationNanos;
+                return stage.startRate + (stage.endRate - stage.startRate) * progress;
+            }
+            stageStart += stage.durationNanos;
+        }
+        return 0;
+    }
+
+    /**
+     * The next arrival is where the integral of the rate from the previous arrival reaches one request, so a ramp
+     * from zero starts slowly instead of waiting for a non-zero rate
+     *
+     * @param offsetNanos time of the previous arrival since the run start
+     * @return time of the next arrival since the run start, -1 if the run is over
+     */
+    public long nextArrival(long offsetNanos) {
+        double needed = 1;
+        long stageStart = 0;
+        for (Stage stage : stages) {
+            final long stageEnd = stageStart + stage.durationNanos;
+            if (offsetNanos < stageEnd) {
+                //1. Seconds since the stage start, rate at that time and its slope
+                final double from = Math.max(0, offsetNanos - stageStart) / NANOS_PER_SECOND;
+                final double duration = stage.durationNanos / NANOS_PER_SECOND;
+                final double slope = (stage.endRate - stage.startRate) / duration;
+                final double rate = stage.startRate + slope * from;
+
+                //2. Arrival within the stage, otherwise carry the rest of the request to the next stage
+                final double delta = solve(rate, slope, needed);
+                if (from + delta <= duration) {
+                    final long next = Math.max(offsetNanos + 1, stageStart + Math.round((from + delta) * NANOS_PER_SECOND));
+                    return next < durationNanos ? next : -1;
+                }
+                final double remaining = duration - from;
+                needed -= rate * remaining + slope * remaining * remaining / 2;
+            }
+            stageStart = stageEnd;
+        }
+        return -1;
+    }
+
+    /**
+     * @return time in seconds for a linear rate to add up to the requests, infinity if it never does
+     */
+    private static double solve(double rate, double slope, double requests) {
+        if (slope == 0) {
+            return rate > 0 ? requests / rate : Double.POSITIVE_INFINITY;
+        }
+        //rate * t + slope * t^2 / 2 = requests, the smallest positive root
+        final double discriminant = rate * rate + 2 * slope * requests;
+        if (discriminant < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (Math.sqrt(discriminant) - rate) / slope;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        for (Stage stage : stages) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(String.format("%.0f->%.0f/s for %ds", stage.startRate, stage.endRate,
+                    TimeUnit.NANOSECONDS.toSeconds(stage.durationNanos)));
+        }
+        return result.toString();
+    }
+
+    public static class Builder {
+
+        private final List<Stage> stages = new ArrayList<>();
+
+        /**
+         * Adds a stage, the rate changes linearly from start to end rate. Zero rate means no arrivals
+         */
+        public Builder ramp(double startRate, double endRate, long duration, TimeUnit unit) {
+            if (startRate < 0 || endRate < 0) {
+                throw new ServiceNotReadyException("Invalid configuration - rate must not be negative");
+            }
+            if (duration <= 0) {
+                throw new ServiceNotReadyException("Invalid configuration - duration must be positive");
+            }
+            stages.add(new Stage(startRate, endRate, unit.toNanos(duration)));
+            return this;
+        }
+
+        public LoadProfile build() {
+            if (stages.isEmpty()) {
+                throw new ServiceNotReadyException("Invalid configuration - profile has no stages");
+            }
+            return new LoadProfile(new ArrayList<>(stages));
+        }
+    }
+
+    private static class Stage {
+        private final double startRate;
+        private final double endRate;
+        private final long durationNanos;
+
+        Stage(double startRate, double endRate, long durationNanos) {
+            this.startRate = startRate;
+            this.endRate = endRate;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LoadProfileTest {
+
+    @Test
+    public void constant() {
+        final LoadProfile profile = LoadProfile.constant(100, 10, TimeUnit.SECONDS);
+        Assert.assertEquals(100, profile.getRate(TimeUnit.SECONDS.toNanos(5)), 0.001);
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), profile.nextArrival(0));
+        Assert.assertEquals(999, countArrivals(profile));
+    }
+
+    @Test
+    public void onSale() {
+        final LoadProfile profile = LoadProfile.onSale(1_000, 100, 2, 4, 10, TimeUnit.SECONDS);
+        Assert.assertEquals(1_000, profile.getRate(TimeUnit.SECONDS.toNanos(1)), 0.001);
+        Assert.assertEquals(550, profile.getRate(TimeUnit.SECONDS.toNanos(4)), 0.001);
+        Assert.assertEquals(100, profile.getRate(TimeUnit.SECONDS.toNanos(8)), 0.001);
+        Assert.assertEquals(0, profile.getRate(TimeUnit.SECONDS.toNanos(10)), 0.001);
+
+        //2s at 1000/s, 4s at 550/s on average, 4s at 100/s
+        Assert.assertEquals(2_000 + 2_200 + 400, countArrivals(profile), 50);
+    }
+
+    @Test
+    public void idleStage() {
+        final LoadProfile profile = LoadProfile.builder()
+                .ramp(0, 0, 1, TimeUnit.SECONDS)
+                .ramp(10, 10, 1, TimeUnit.SECONDS)
+                .build();
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1_100), profile.nextArrival(0));
+        Assert.assertEquals(9, countArrivals(profile));
+    }
+
+    @Test
+    public void rampFromZero() {
+        final LoadProfile profile = LoadProfile.builder().ramp(0, 1_000, 10, TimeUnit.SECONDS).build();
+
+        //Rate is 100 t per second, the first request adds up at sqrt(2 / 100) seconds
+        Assert.assertEquals(Math.sqrt(0.02), profile.nextArrival(0) / 1e9, 0.000_001);
+        //Average rate 500/s for 10s
+        Assert.assertEquals(5_000, countArrivals(profile), 2);
+    }
+
+    @Test
+    public void rampDown() {
+        final LoadProfile profile = LoadProfile.builder().ramp(1_000, 0, 10, TimeUnit.SECONDS).build();
+        Assert.assertEquals(5_000, countArrivals(profile), 2);
+    }
+
+    @Test(expected = ServiceNotReadyException.class)
+    public void negativeRate() {
+        LoadProfile.builder().ramp(-1, 10, 1, TimeUnit.SECONDS);
+    }
+
+    private static int countArrivals(LoadProfile profile) {
+        int count = 0;
+        long offset = 0;
+        while ((offset = profile.nextArrival(offset)) >= 0) {
+            count++;
+        }
+        return count;
+    }
+}
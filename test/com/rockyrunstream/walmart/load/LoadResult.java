@@ -0,0 +1,118 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.impl.metrics.LatencySnapshot;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms and result statuses of a load run
+ */
+public class LoadResult {
+
+    private final String description;
+    private final long durationNanos;
+    private final MetricsRegistry metrics;
+    private final int arrivals;
+    private final long scheduleNanos;
+    private final long elapsedNanos;
+
+    /**
+     * @param description   load description, a profile or a trace
+     * @param durationNanos time the load was intended to take
+     */
+    LoadResult(String description, long durationNanos, MetricsRegistry metrics, int arrivals, long scheduleNanos, long elapsedNanos) {
+        this.description = description;
+        this.durationNanos = durationNanos;
+        this.metrics = metrics;
+        this.arrivals = arrivals;
+        this.scheduleNanos = scheduleNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return response time of the operation, from the intended start. Null if the operation was never called
+     */
+    public LatencySnapshot getResponseTime(String operation) {
+        return metrics.getLatency(operation);
+    }
+
+    /**
+     * @return service time of the operation, from the actual start. Null if the operation was never called
+     */
+    public LatencySnapshot getServiceTime(String operation) {
+        return metrics.getLatency(operation + LoadGenerator.SERVICE_TIME);
+    }
+
+    /**
+     * @return completed calls per second, over the whole run including the drain
+     */
+    public double getThroughput(String operation) {
+        final LatencySnapshot latency = getResponseTime(operation);
+        return latency == null ? 0 : latency.getCount() * TimeUnit.SECONDS.toNanos(1) / (double) elapsedNanos;
+    }
+
+    /**
+     * @return calls of the operation which ended with the status or exception
+     */
+    public long getCount(String operation, String status) {
+        return metrics.getCount(operation + "." + status);
+    }
+
+    /**
+     * @return arrivals per second the load asked for
+     */
+    public double getIntendedRate() {
+        return arrivals * TimeUnit.SECONDS.toNanos(1) / (double) durationNanos;
+    }
+
+    public int getArrivals() {
+        return arrivals;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Prints percentiles and throughput of the operations, then result statuses
+     */
+    public void print(PrintStream out) {
+        out.printf(" Load: %s%n", description);
+        out.printf(" Arrivals %d, intended rate %.1f/s, scheduled in %.1f s, drained in %.1f s%n", arrivals,
+                getIntendedRate(), scheduleNanos / 1e9, (elapsedNanos - scheduleNanos) / 1e9);
+        final LatencySnapshot startDelay = metrics.getLatency(LoadGenerator.START_DELAY);
+        if (startDelay != null) {
+            out.printf(" Start delay, ms: p50 %.2f, p99 %.2f, max %.2f%n", startDelay.getPercentileMicros(50) / 1_000,
+                    startDelay.getPercentileMicros(99) / 1_000, startDelay.getMaxMicros() / 1_000);
+        }
+
+        out.println();
+        out.printf(" %-20s %8s %10s | %9s %9s %9s %9s | %9s %9s%n", "response time, ms", "count", "ops/s", "p50", "p99",
+                "p99.9", "max", "svc p99", "svc max");
+        for (String operation : LoadGenerator.OPERATIONS) {
+            final LatencySnapshot response = getResponseTime(operation);
+            if (response == null) {
+                continue;
+            }
+            final LatencySnapshot service = getServiceTime(operation);
+            out.printf(" %-20s %8d %10.1f | %9.2f %9.2f %9.2f %9.2f | %9s %9s%n", operation, response.getCount(),
+                    getThroughput(operation), response.getPercentileMicros(50) / 1_000, response.getPercentileMicros(99) / 1_000,
+                    response.getPercentileMicros(99.9) / 1_000, response.getMaxMicros() / 1_000,
+                    service == null ? "" : String.format("%.2f", service.getPercentileMicros(99) / 1_000),
+                    service == null ? "" : String.format("%.2f", service.getMaxMicros() / 1_000));
+        }
+
+        out.println();
+        out.println(" Results:");
+        for (Map.Entry<String, Long> count : metrics.getCounts().entrySet()) {
+            out.printf("  %-40s %8d%n", count.getKey(), count.getValue());
+        }
+    }
+}
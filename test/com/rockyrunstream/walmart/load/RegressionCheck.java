@@ -0,0 +1,89 @@
+package com.rockyrunstream.walmart.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares scalability results with a baseline. A cell regresses if hold throughput drops, or hold p99 latency or
+ * allocation per hold grows, by more than the threshold. Latency changes under 1 ms are noise and ignored.
+ * Cells missing from the baseline are reported, not flagged
+ */
+public class RegressionCheck {
+
+    private static final double MIN_LATENCY_CHANGE_MS = 1;
+
+    private final double thresholdPercent;
+
+    private final Map<String, ScalabilityResult> baseline = new LinkedHashMap<>();
+
+    /**
+     * @param thresholdPercent allowed change, percent of the baseline value
+     */
+    public RegressionCheck(List<ScalabilityResult> baseline, double thresholdPercent) {
+        this.thresholdPercent = thresholdPercent;
+        baseline.forEach(result -> this.baseline.put(result.getKey(), result));
+    }
+
+    public static List<ScalabilityResult> readCsv(Path file) throws IOException {
+        final List<ScalabilityResult> results = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty() && !line.equals(ScalabilityResult.CSV_HEADER)) {
+                results.add(ScalabilityResult.fromCsv(line));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints change of every cell against the baseline
+     *
+     * @return regressions, one line per regressed metric
+     */
+    public List<String> compare(List<ScalabilityResult> results, PrintStream out) {
+        final List<String> regressions = new ArrayList<>();
+        out.printf("%-50s %14s %14s %14s%n", "cell", "holds/s", "hold p99", "alloc/hold");
+        for (ScalabilityResult result : results) {
+            final ScalabilityResult base = baseline.get(result.getKey());
+            if (base == null) {
+                out.printf("%-50s %14s%n", result.getKey(), "no baseline");
+                continue;
+            }
+            final double throughput = change(base.getHoldsPerSec(), result.getHoldsPerSec());
+            final double latency = change(base.getHoldP99Ms(), result.getHoldP99Ms());
+            final double allocation = base.getAllocPerHold() < 0 || result.getAllocPerHold() < 0 ? 0
+                    : change(base.getAllocPerHold(), result.getAllocPerHold());
+            out.printf("%-50s %+13.1f%% %+13.1f%% %+13.1f%%%n", result.getKey(), throughput, latency, allocation);
+
+            if (-throughput > thresholdPercent) {
+                regressions.add(String.format("%s: holds/s %.1f -> %.1f", result.getKey(), base.getHoldsPerSec(),
+                        result.getHoldsPerSec()));
+            }
+            if (latency > thresholdPercent && result.getHoldP99Ms() - base.getHoldP99Ms() > MIN_LATENCY_CHANGE_MS) {
+                regressions.add(String.format("%s: hold p99 %.3f -> %.3f ms", result.getKey(), base.getHoldP99Ms(),
+                        result.getHoldP99Ms()));
+            }
+            if (allocation > thresholdPercent) {
+                regressions.add(String.format("%s: alloc/hold %d -> %d bytes", result.getKey(), base.getAllocPerHold(),
+                        result.getAllocPerHold()));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @return change from the baseline, percent
+     */
+    private static double change(double base, double value) {
+        if (base == 0) {
+            return value == 0 ? 0 : 100;
+        }
+        return (value - base) * 100 / base;
+    }
+}
@@ -0,0 +1,48 @@
+package com.rockyrunstream.walmart.load;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RegressionCheckTest {
+
+    @Test
+    public void csv() {
+        final ScalabilityResult result = result(4, 100.5, 2.25, 4096);
+        final ScalabilityResult copy = ScalabilityResult.fromCsv(result.toCsv());
+        Assert.assertEquals(result.getKey(), copy.getKey());
+        Assert.assertEquals(100.5, copy.getHoldsPerSec(), 0.001);
+        Assert.assertEquals(2.25, copy.getHoldP99Ms(), 0.001);
+        Assert.assertEquals(4096, copy.getAllocPerHold());
+        Assert.assertEquals(ScalabilityResult.CSV_HEADER.split(",").length, result.toCsv().split(",").length);
+    }
+
+    @Test
+    public void regressions() {
+        final RegressionCheck check = new RegressionCheck(Arrays.asList(result(1, 100, 2, 1000), result(4, 300, 2, 1000)), 10);
+
+        //Within threshold, latency change is under 1 ms
+        Assert.assertTrue(compare(check, result(1, 95, 2.8, 1050)).isEmpty());
+
+        //Throughput, latency and allocation regressed
+        Assert.assertEquals(3, compare(check, result(4, 200, 4, 2000)).size());
+
+        //Improvements and new cells are fine
+        Assert.assertTrue(compare(check, result(1, 200, 1, 500)).isEmpty());
+        Assert.assertTrue(compare(check, result(16, 1, 100, 100_000)).isEmpty());
+    }
+
+    private static List<String> compare(RegressionCheck check, ScalabilityResult result) {
+        return check.compare(Collections.singletonList(result), new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    private static ScalabilityResult result(int threads, double holdsPerSec, double holdP99Ms, long allocPerHold) {
+        return new ScalabilityResult(threads, "100x100", 1000, GroupSize.SMALL, 5, holdsPerSec, holdsPerSec * 0.9,
+                holdP99Ms / 2, holdP99Ms, holdP99Ms * 2, 1, 0.01, 12, allocPerHold);
+    }
+}
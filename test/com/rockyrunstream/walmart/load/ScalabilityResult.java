@@ -0,0 +1,145 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+
+import java.util.Locale;
+
+/**
+ * Result of one cell of the scalability matrix, a CSV row. Cells are identified by their parameters, see {@link #getKey()}
+ */
+public class ScalabilityResult {
+
+    public static final String CSV_HEADER = "threads,venue,holdTime,groups,seconds,holdsPerSec,reservationsPerSec,"
+            + "holdP50Ms,holdP99Ms,holdP999Ms,reserveP99Ms,retryRate,gcMillis,allocPerHold";
+
+    //Parameters
+    private final int threads;
+    private final String venue;
+    private final long holdTime;
+    private final GroupSize groups;
+
+    //Results
+    private final double seconds;
+    private final double holdsPerSec;
+    private final double reservationsPerSec;
+    private final double holdP50Ms;
+    private final double holdP99Ms;
+    private final double holdP999Ms;
+    private final double reserveP99Ms;
+    private final double retryRate;
+    private final long gcMillis;
+    private final long allocPerHold;
+
+    /**
+     * @param venue        rows x seats
+     * @param retryRate    optimistic lock retries per hold
+     * @param allocPerHold bytes allocated by request threads per successful hold, -1 if not supported by the JVM
+     */
+    public ScalabilityResult(int threads, String venue, long holdTime, GroupSize groups, double seconds, double holdsPerSec,
+                             double reservationsPerSec, double holdP50Ms, double holdP99Ms, double holdP999Ms,
+                             double reserveP99Ms, double retryRate, long gcMillis, long allocPerHold) {
+        this.threads = threads;
+        this.venue = venue;
+        this.holdTime = holdTime;
+        this.groups = groups;
+        this.seconds = seconds;
+        this.holdsPerSec = holdsPerSec;
+        this.reservationsPerSec = reservationsPerSec;
+        this.holdP50Ms = holdP50Ms;
+        this.holdP99Ms = holdP99Ms;
+        this.holdP999Ms = holdP999Ms;
+        this.reserveP99Ms = reserveP99Ms;
+        this.retryRate = retryRate;
+        this.gcMillis = gcMillis;
+        this.allocPerHold = allocPerHold;
+    }
+
+    public static ScalabilityResult fromCsv(String line) {
+        final String[] values = line.split(",");
+        if (values.length != 14) {
+            throw new ServiceNotReadyException("Invalid configuration - expecting 14 values in " + line);
+        }
+        return new ScalabilityResult(Integer.parseInt(values[0]), values[1], Long.parseLong(values[2]),
+                GroupSize.valueOf(values[3]), Double.parseDouble(values[4]), Double.parseDouble(values[5]),
+                Double.parseDouble(values[6]), Double.parseDouble(values[7]), Double.parseDouble(values[8]),
+                Double.parseDouble(values[9]), Double.parseDouble(values[10]), Double.parseDouble(values[11]),
+                Long.parseLong(values[12]), Long.parseLong(values[13]));
+    }
+
+    public String toCsv() {
+        return String.format(Locale.ROOT, "%d,%s,%d,%s,%.2f,%.1f,%.1f,%.3f,%.3f,%.3f,%.3f,%.4f,%d,%d", threads, venue,
+                holdTime, groups, seconds, holdsPerSec, reservationsPerSec, holdP50Ms, holdP99Ms, holdP999Ms,
+                reserveP99Ms, retryRate, gcMillis, allocPerHold);
+    }
+
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"threads\":%d,\"venue\":\"%s\",\"holdTime\":%d,\"groups\":\"%s\","
+                        + "\"seconds\":%.2f,\"holdsPerSec\":%.1f,\"reservationsPerSec\":%.1f,\"holdP50Ms\":%.3f,"
+                        + "\"holdP99Ms\":%.3f,\"holdP999Ms\":%.3f,\"reserveP99Ms\":%.3f,\"retryRate\":%.4f,"
+                        + "\"gcMillis\":%d,\"allocPerHold\":%d}", threads, venue, holdTime, groups, seconds, holdsPerSec,
+                reservationsPerSec, holdP50Ms, holdP99Ms, holdP999Ms, reserveP99Ms, retryRate, gcMillis, allocPerHold);
+    }
+
+    /**
+     * @return cell parameters, the same for a cell across runs
+     */
+    public String getKey() {
+        return threads + " threads, " + venue + ", hold " + holdTime + " ms, " + groups;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getVenue() {
+        return venue;
+    }
+
+    public long getHoldTime() {
+        return holdTime;
+    }
+
+    public GroupSize getGroups() {
+        return groups;
+    }
+
+    public double getSeconds() {
+        return seconds;
+    }
+
+    public double getHoldsPerSec() {
+        return holdsPerSec;
+    }
+
+    public double getReservationsPerSec() {
+        return reservationsPerSec;
+    }
+
+    public double getHoldP50Ms() {
+        return holdP50Ms;
+    }
+
+    public double getHoldP99Ms() {
+        return holdP99Ms;
+    }
+
+    public double getHoldP999Ms() {
+        return holdP999Ms;
+    }
+
+    public double getReserveP99Ms() {
+        return reserveP99Ms;
+    }
+
+    public double getRetryRate() {
+        return retryRate;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    public long getAllocPerHold() {
+        return allocPerHold;
+    }
+}
@@ -0,0 +1,169 @@
+package com.rockyrunstream.walmart.load;
+
+import com.rockyrunstream.walmart.SeatHold;
+import com.rockyrunstream.walmart.ServiceNotReadyException;
+import com.rockyrunstream.walmart.ServiceResult;
+import com.rockyrunstream.walmart.TicketService;
+import com.rockyrunstream.walmart.impl.metrics.MetricsRegistry;
+import com.rockyrunstream.walmart.impl.trace.TraceEvent;
+import com.rockyrunstream.walmart.impl.trace.TraceReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded trace against a TicketService, calls are issued at recorded times divided by the speed. Like
+ * {@link LoadGenerator} the replay is open-loop and measures response time from the intended start.
+ *
+ * Calls of one customer run in order on one lane, so a reservation always follows its hold. Recorded seat hold IDs are
+ * mapped to the ones issued by the replay, a reservation of a hold which failed in the replay or was never recorded is
+ * skipped and counted
+ */
+public class TraceReplayer {
+
+    public static final String SKIPPED = "SKIPPED";
+
+    public static final String STATUS_CHANGED = "replay.statusChanged";
+
+    private static final Logger log = LoggerFactory.getLogger(TraceReplayer.class);
+
+    private final TicketService ticketService;
+
+    private double speed = 1;
+
+    private int lanes = 64;
+
+    public TraceReplayer(TicketService ticketService) {
+        this.ticketService = ticketService;
+    }
+
+    /**
+     * Replays the trace and waits for calls in flight. The caller sets up the venue, see {@link TraceReader}
+     */
+    public LoadResult replay(TraceReader trace) throws IOException {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final Map<Integer, Integer> seatHoldIds = new ConcurrentHashMap<>();
+        final ExecutorService[] executors = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            final String name = "replay-" + i;
+            executors[i] = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        //1. Issue calls on schedule
+        final long start = System.nanoTime();
+        int events = 0;
+        long lastOffset = 0;
+        TraceEvent event;
+        while ((event = trace.read()) != null) {
+            final long intended = start + (long) (event.getOffsetNanos() / speed);
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            //Anonymous calls have no order to keep
+            final TraceEvent call = event;
+            final int lane = call.getCustomer() == 0 ? events % lanes : call.getCustomer() % lanes;
+            executors[lane].execute(() -> call(metrics, seatHoldIds, call, intended));
+            lastOffset = Math.max(lastOffset, event.getOffsetNanos());
+            events++;
+        }
+        final long scheduled = System.nanoTime() - start;
+
+        //2. Drain
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        try {
+            for (ExecutorService executor : executors) {
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Replay calls still in flight after 1 minute");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new LoadResult(String.format("trace at %.1fx speed", speed), Math.max(1, (long) (lastOffset / speed)),
+                metrics, events, scheduled, System.nanoTime() - start);
+    }
+
+    private void call(MetricsRegistry metrics, Map<Integer, Integer> seatHoldIds, TraceEvent event, long intended) {
+        final String email = "customer" + event.getCustomer() + "@example.com";
+        final ServiceResult<?> result;
+        switch (event.getType()) {
+            case NUM_SEATS_AVAILABLE:
+                result = LoadGenerator.call(metrics, LoadGenerator.NUM_SEATS_AVAILABLE, intended,
+                        () -> ServiceResult.ok(ticketService.numSeatsAvailable()));
+                break;
+            case FIND_AND_HOLD_SEATS:
+                final ServiceResult<SeatHold> hold = LoadGenerator.call(metrics, LoadGenerator.FIND_AND_HOLD_SEATS, intended,
+                        () -> ticketService.tryFindAndHoldSeats(event.getNumSeats(), email));
+                if (hold != null && hold.isOk() && event.getSeatHoldId() != TraceEvent.NO_SEAT_HOLD) {
+                    seatHoldIds.put(event.getSeatHoldId(), hold.getValue().getId());
+                }
+                result = hold;
+                break;
+            case RESERVE_SEATS:
+                result = onHold(metrics, seatHoldIds, event, LoadGenerator.RESERVE_SEATS, intended,
+                        seatHoldId -> ticketService.tryReserveSeats(seatHoldId, email));
+                break;
+            case RELEASE_HOLD:
+                result = onHold(metrics, seatHoldIds, event, LoadGenerator.RELEASE_HOLD, intended,
+                        seatHoldId -> ticketService.tryReleaseHold(seatHoldId, email));
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + event.getType());
+        }
+        if (result != null && event.getStatus() != null && result.getStatus() != event.getStatus()) {
+            metrics.increment(STATUS_CHANGED);
+        }
+    }
+
+    private ServiceResult<?> onHold(MetricsRegistry metrics, Map<Integer, Integer> seatHoldIds, TraceEvent event,
+                                    String operation, long intended, HoldCall call) {
+        final Integer seatHoldId = seatHoldIds.get(event.getSeatHoldId());
+        if (seatHoldId == null) {
+            metrics.increment(operation + "." + SKIPPED);
+            return null;
+        }
+        return LoadGenerator.call(metrics, operation, intended, () -> call.call(seatHoldId));
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed 1 replays at recorded pace, 10 issues the same calls 10 times faster
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * @param lanes threads issuing calls, customers are spread across them
+     */
+    public void setLanes(int lanes) {
+        if (lanes <= 0) {
+            throw new ServiceNotReadyException("Invalid configuration - lanes must be positive");
+        }
+        this.lanes = lanes;
+    }
+
+    private interface HoldCall {
+        ServiceResult<?> call(int seatHoldId);
+    }
+}